@@ -0,0 +1,73 @@
+package com.tradingview.alertapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知分类吞吐：和 res/values/arrays.xml 相同的配置，混合警报、邮件（有/无关键词）和无关应用的通知。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassifierBenchmark {
+    private static final int SAMPLES = 1024;
+
+    static final String[] ALERT_PACKAGE_FRAGMENTS = {"tradingview"};
+    static final String[] CONTENT_PACKAGES = {
+        "com.google.android.gm", "com.microsoft.office.outlook", "com.yahoo.mobile.client",
+        "com.samsung.android.email", "com.tencent.androidqqmail", "com.tencent.qqlite", "com.tencent.mobileqq"
+    };
+    static final String[] KEYWORDS = {"tradingview", "alert", "警报", "提醒", "btc", "eth", "usdt"};
+
+    private static final String[] OTHER_PACKAGES = {
+        "com.whatsapp", "com.android.systemui", "com.spotify.music", "com.tencent.mm", "com.android.chrome"
+    };
+
+    private AlertClassifier classifier;
+    private final String[] packages = new String[SAMPLES];
+    private final String[] titles = new String[SAMPLES];
+    private final String[] texts = new String[SAMPLES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        classifier = new AlertClassifier(ALERT_PACKAGE_FRAGMENTS, CONTENT_PACKAGES, KEYWORDS);
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                packages[i] = "com.tradingview.tradingviewapp";
+                titles[i] = "BINANCE:BTCUSDT";
+                texts[i] = "Crossing 65000.00 on 15m";
+            } else if (kind < 4) {
+                packages[i] = CONTENT_PACKAGES[random.nextInt(CONTENT_PACKAGES.length)];
+                titles[i] = random.nextBoolean() ? "TradingView Alert: ETHUSDT" : "Weekly newsletter from the team";
+                texts[i] = "Hello, here is a message body that is long enough to be realistic for an email preview.";
+            } else {
+                packages[i] = OTHER_PACKAGES[random.nextInt(OTHER_PACKAGES.length)];
+                titles[i] = "New message";
+                texts[i] = "See you at 7? Let me know if anything changes on your side.";
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean isAlert() {
+        int i = next++ & (SAMPLES - 1);
+        return classifier.isAlert(packages[i], titles[i], texts[i]);
+    }
+
+    @Benchmark
+    public boolean containsKeyword() {
+        int i = next++ & (SAMPLES - 1);
+        return classifier.containsKeyword(titles[i], texts[i]);
+    }
+}
@@ -0,0 +1,52 @@
+package com.tradingview.alertapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 去重缓存：重复通知（命中）和新通知（未命中，缓存满时淘汰最旧的）两种情况。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DedupeCacheBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private ExpiringDedupeCache cache;
+    private final String[] keys = new String[KEYS];
+    private int next;
+
+    @Setup
+    public void setup() {
+        cache = new ExpiringDedupeCache(60000, capacity);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "0|com.tradingview.tradingviewapp|" + i + "|BINANCE:BTCUSDT crossing " + (60000 + i);
+        }
+        // 命中测试用前 capacity/2 个键，先放进去
+        for (int i = 0; i < capacity / 2; i++) {
+            cache.markIfAbsent(keys[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return cache.markIfAbsent(keys[next++ % (capacity / 2)]);
+    }
+
+    /** 键的数量远大于容量，每次都是新键并淘汰一个旧键 */
+    @Benchmark
+    public boolean missWithEviction() {
+        return cache.markIfAbsent(keys[next++ & (KEYS - 1)]);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tradingview.alertapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轮询响应解析：流式的 AlertJsonReader 对比原来的 StringBuilder + JSONObject。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PollPayloadBenchmark {
+
+    @Param({"0", "1", "20", "200"})
+    public int alerts;
+
+    private byte[] payload;
+    private final AlertJsonReader reader = new AlertJsonReader();
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("{\"count\": ").append(alerts).append(", \"alerts\": [");
+        for (int i = 0; i < alerts; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("{\"id\": ").append(1000 + i)
+                .append(", \"subject\": \"TradingView Alert: BINANCE:BTCUSDT Crossing ").append(60000 + i)
+                .append("\", \"from\": \"noreply@tradingview.com\", \"time\": ").append(1700000000000L + i)
+                .append(", \"meta\": {\"tags\": [\"crypto\", \"btc\"], \"priority\": 1}}");
+        }
+        payload = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int streaming(final Blackhole bh) throws IOException {
+        return reader.read(new ByteArrayInputStream(payload), (id, subject, from, time) -> {
+            bh.consume(id);
+            bh.consume(subject);
+            bh.consume(from);
+            bh.consume(time);
+        });
+    }
+
+    /** 改造前的做法：整个响应读成字符串，再用 JSONObject 建整棵树 */
+    @Benchmark
+    public int stringBuilderJsonObject(Blackhole bh) throws IOException, JSONException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            new ByteArrayInputStream(payload), StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            response.append(line);
+        }
+        JSONObject json = new JSONObject(response.toString());
+        JSONArray array = json.getJSONArray("alerts");
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject alert = array.getJSONObject(i);
+            bh.consume(alert.optString("id"));
+            bh.consume(alert.getString("subject"));
+            bh.consume(alert.getString("from"));
+            bh.consume(alert.optLong("time"));
+        }
+        return array.length();
+    }
+}
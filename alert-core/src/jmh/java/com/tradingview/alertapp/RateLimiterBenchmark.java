@@ -0,0 +1,55 @@
+package com.tradingview.alertapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流：少数几个品种反复触发（大多被限流），和大量不同品种轮流出现（表满时清理、淘汰）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RateLimiterBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    @Param({"4096"})
+    public int capacity;
+
+    private AlertRateLimiter limiter;
+    private final long[] keys = new long[KEYS];
+    private final long[] sources = new long[16];
+    private long now;
+    private int next;
+
+    @Setup
+    public void setup() {
+        limiter = new AlertRateLimiter(3, 60000, 20, 1000, capacity);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i + 1;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = AlertRateLimiter.sourceKey(AlertPipeline.Source.LISTENER, "com.example.app" + i);
+        }
+    }
+
+    @Benchmark
+    public int hotSymbols() {
+        int i = next++;
+        return limiter.tryAcquire(keys[i & 7], sources[i & 15], now++);
+    }
+
+    /** 品种数远大于容量，每毫秒都有新品种 */
+    @Benchmark
+    public int distinctSymbols() {
+        int i = next++;
+        return limiter.tryAcquire(keys[i & (KEYS - 1)], sources[i & 15], now++);
+    }
+}
@@ -0,0 +1,74 @@
+package com.tradingview.alertapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时任务的插入/取消：时间轮里已有 pending 个任务（和警报的结束/重复计划相同的时间分布）时，
+ * 再插入并取消一个的开销。对照组是按到期时间排序的 PriorityQueue（取消是 O(n)）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimerWheelBenchmark {
+    private static final long TICK = 50;
+    private static final long[] DELAYS = {250, 2000, 180000, 600000};
+    private static final Runnable NOOP = () -> { };
+
+    @Param({"10", "1000", "100000"})
+    public int pending;
+
+    private TimerWheel wheel;
+    private PriorityQueue<long[]> queue;
+    private long now;
+    private int next;
+
+    @Setup
+    public void setup() {
+        now = 1000000;
+        wheel = new TimerWheel(TICK, 4, now);
+        queue = new PriorityQueue<>(pending + 1, (a, b) -> Long.compare(a[0], b[0]));
+        Random random = new Random(42);
+        for (int i = 0; i < pending; i++) {
+            long deadline = now + DELAYS[random.nextInt(DELAYS.length)] + random.nextInt(1000);
+            wheel.schedule(NOOP, deadline);
+            queue.add(new long[] {deadline});
+        }
+    }
+
+    @Benchmark
+    public boolean scheduleCancel() {
+        TimerWheel.Timeout timeout = wheel.schedule(NOOP, now + DELAYS[next++ & 3]);
+        return timeout.cancel();
+    }
+
+    @Benchmark
+    public boolean priorityQueueScheduleCancel() {
+        long[] entry = {now + DELAYS[next++ & 3]};
+        queue.add(entry);
+        return queue.remove(entry);
+    }
+
+    /** 插入后推进时间让它到期执行：包含下放（cascade）的开销 */
+    @Benchmark
+    public int scheduleFire() {
+        wheel.schedule(NOOP, now + TICK);
+        now += TICK;
+        return wheel.advance(now);
+    }
+
+    @Benchmark
+    public long nextWakeup() {
+        return wheel.nextWakeup();
+    }
+}
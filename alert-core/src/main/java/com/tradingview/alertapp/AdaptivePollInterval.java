@@ -0,0 +1,141 @@
+package com.tradingview.alertapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自适应轮询间隔：
+ * - 连接失败后指数退避（带抖动），服务器恢复后立刻回到基准间隔
+ * - 收到警报后收紧到下限并保持一段时间（警报往往成串出现）
+ * - 长时间没有警报时逐步放宽，最多到上限
+ *
+ * 每次间隔变化都记录在一个固定大小的历史里，方便观察延迟和耗电之间的取舍。
+ */
+public class AdaptivePollInterval {
+    private static final int HISTORY_SIZE = 64;
+    private static final double RELAX_FACTOR = 1.5;
+    private static final double JITTER = 0.25;
+
+    public static class Decision {
+        public final long timeMs;
+        public final long intervalMs;
+        public final String reason;
+
+        Decision(long timeMs, long intervalMs, String reason) {
+            this.timeMs = timeMs;
+            this.intervalMs = intervalMs;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return reason + " -> " + intervalMs + "ms";
+        }
+    }
+
+    private final long floorMs;
+    private final long baseMs;
+    private final long ceilingMs;
+    private final long boostWindowMs;
+    private final long quietAfterMs;
+
+    private long currentMs;
+    private String currentReason = "initial";
+    private int consecutiveFailures = 0;
+    private long lastAlertAt;
+
+    private final Decision[] history = new Decision[HISTORY_SIZE];
+    private int historyCount = 0;
+
+    /**
+     * @param floorMs       收到警报后使用的最短间隔
+     * @param baseMs        正常情况下的间隔
+     * @param ceilingMs     退避和放宽的上限
+     * @param boostWindowMs 最后一条警报之后保持最短间隔的时长
+     * @param quietAfterMs  没有警报超过这个时长后开始放宽间隔
+     */
+    public AdaptivePollInterval(long floorMs, long baseMs, long ceilingMs,
+                                long boostWindowMs, long quietAfterMs) {
+        if (floorMs <= 0 || floorMs > baseMs || baseMs > ceilingMs) {
+            throw new IllegalArgumentException(
+                "Require 0 < floor <= base <= ceiling, got " + floorMs + "/" + baseMs + "/" + ceilingMs);
+        }
+        this.floorMs = floorMs;
+        this.baseMs = baseMs;
+        this.ceilingMs = ceilingMs;
+        this.boostWindowMs = boostWindowMs;
+        this.quietAfterMs = quietAfterMs;
+        this.currentMs = baseMs;
+        this.lastAlertAt = System.currentTimeMillis();
+    }
+
+    public synchronized long onSuccess(int alertCount) {
+        return onSuccess(alertCount, System.currentTimeMillis());
+    }
+
+    synchronized long onSuccess(int alertCount, long nowMs) {
+        consecutiveFailures = 0;
+        if (alertCount > 0) {
+            lastAlertAt = nowMs;
+            return decide(nowMs, floorMs, "boost");
+        }
+
+        long quietFor = nowMs - lastAlertAt;
+        if (quietFor < boostWindowMs) {
+            return decide(nowMs, floorMs, "boost-hold");
+        }
+        if (quietFor >= quietAfterMs) {
+            long relaxed = (long) (Math.max(currentMs, baseMs) * RELAX_FACTOR);
+            return decide(nowMs, Math.min(ceilingMs, relaxed), "relax");
+        }
+        return decide(nowMs, baseMs, "steady");
+    }
+
+    public synchronized long onFailure() {
+        return onFailure(System.currentTimeMillis());
+    }
+
+    synchronized long onFailure(long nowMs) {
+        consecutiveFailures++;
+        // 限制移位次数，避免溢出
+        long backoff = baseMs << Math.min(consecutiveFailures, 16);
+        backoff = Math.min(ceilingMs, backoff);
+        long spread = (long) (backoff * JITTER);
+        long jittered = backoff - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1);
+        return decide(nowMs, Math.max(floorMs, Math.min(ceilingMs, jittered)), "backoff#" + consecutiveFailures);
+    }
+
+    private long decide(long nowMs, long intervalMs, String reason) {
+        // 只记录发生变化的决策，稳定状态不会把历史冲掉
+        if (intervalMs != currentMs || !reason.equals(currentReason)) {
+            history[historyCount % HISTORY_SIZE] = new Decision(nowMs, intervalMs, reason);
+            historyCount++;
+        }
+        currentMs = intervalMs;
+        currentReason = reason;
+        return intervalMs;
+    }
+
+    public synchronized long getCurrentInterval() {
+        return currentMs;
+    }
+
+    public synchronized String getCurrentReason() {
+        return currentReason;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /** 最近的决策，从旧到新 */
+    public synchronized List<Decision> getHistory() {
+        int size = Math.min(historyCount, HISTORY_SIZE);
+        List<Decision> result = new ArrayList<>(size);
+        for (int i = historyCount - size; i < historyCount; i++) {
+            result.add(history[i % HISTORY_SIZE]);
+        }
+        return result;
+    }
+}
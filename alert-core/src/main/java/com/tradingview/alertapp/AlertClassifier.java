@@ -0,0 +1,241 @@
+package com.tradingview.alertapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预编译的通知分类器，判断一条通知是不是 TradingView 警报。
+ *
+ * - 包名：第一次见到时按配置判定，之后从缓存 O(1) 取结果
+ * - 内容：所有关键词编译成一个 Aho-Corasick 自动机，标题和正文只扫描一遍，
+ *   逐字符忽略大小写匹配，不拼接字符串也不生成小写副本
+ *
+ * 构造完成后只读，可以被多个线程同时使用。
+ */
+public class AlertClassifier {
+    private static final int ASCII = 128;
+    // 一台手机上的包名有限，超过这个数量就不再缓存（仍然能正确判定）
+    private static final int MAX_CACHED_PACKAGES = 512;
+
+    private static final byte PACKAGE_IGNORE = 0;
+    private static final byte PACKAGE_ALERT = 1;    // TradingView 应用本身，直接视为警报
+    private static final byte PACKAGE_CONTENT = 2;  // 邮件等应用，需要检查内容
+
+    private final String[] alertPackageFragments;
+    private final Set<String> contentPackages;
+    private final ConcurrentHashMap<String, Byte> packageCache = new ConcurrentHashMap<>();
+
+    // 自动机：ASCII 字符用完整的转移表，其他字符（中文关键词等）用每个状态的有序稀疏表
+    private final int[] asciiDelta;
+    private final char[][] sparseChars;
+    private final int[][] sparseTargets;
+    private final int[] fail;
+    private final boolean[] output;
+
+    /**
+     * @param alertPackageFragments 包名包含其中任意一个片段即视为警报（如 "tradingview"）
+     * @param contentPackages       需要按内容判断的应用包名（精确匹配）
+     * @param keywords              内容关键词，忽略大小写
+     */
+    public AlertClassifier(String[] alertPackageFragments, String[] contentPackages, String[] keywords) {
+        this.alertPackageFragments = alertPackageFragments.clone();
+        this.contentPackages = new HashSet<>(Arrays.asList(contentPackages));
+
+        // 1. 构建关键词 trie
+        List<int[]> asciiChildren = new ArrayList<>();
+        List<List<Character>> sparseKeys = new ArrayList<>();
+        List<List<Integer>> sparseValues = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        newNode(asciiChildren, sparseKeys, sparseValues, terminal);
+
+        for (String keyword : keywords) {
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                int next = child(node, c, asciiChildren, sparseKeys, sparseValues);
+                if (next < 0) {
+                    next = newNode(asciiChildren, sparseKeys, sparseValues, terminal);
+                    if (c < ASCII) {
+                        asciiChildren.get(node)[c] = next;
+                    } else {
+                        sparseKeys.get(node).add(c);
+                        sparseValues.get(node).add(next);
+                    }
+                }
+                node = next;
+            }
+            terminal.set(node, Boolean.TRUE);
+        }
+
+        int nodeCount = asciiChildren.size();
+        asciiDelta = new int[nodeCount * ASCII];
+        sparseChars = new char[nodeCount][];
+        sparseTargets = new int[nodeCount][];
+        fail = new int[nodeCount];
+        output = new boolean[nodeCount];
+
+        for (int n = 0; n < nodeCount; n++) {
+            List<Character> keys = sparseKeys.get(n);
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            final List<Character> k = keys;
+            Arrays.sort(order, (a, b) -> Character.compare(k.get(a), k.get(b)));
+            sparseChars[n] = new char[order.length];
+            sparseTargets[n] = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sparseChars[n][i] = keys.get(order[i]);
+                sparseTargets[n][i] = sparseValues.get(n).get(order[i]);
+            }
+            output[n] = terminal.get(n);
+        }
+
+        // 2. BFS 计算失败链接，并把 ASCII 转移补全成 DFA
+        Queue<Integer> queue = new ArrayDeque<>();
+        int[] rootChildren = asciiChildren.get(0);
+        for (int c = 0; c < ASCII; c++) {
+            int next = rootChildren[c];
+            asciiDelta[c] = next > 0 ? next : 0;
+            if (next > 0) {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        for (int next : sparseTargets[0]) {
+            fail[next] = 0;
+            queue.add(next);
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            output[node] |= output[fail[node]];
+
+            int[] children = asciiChildren.get(node);
+            for (int c = 0; c < ASCII; c++) {
+                int next = children[c];
+                if (next > 0) {
+                    fail[next] = asciiDelta[fail[node] * ASCII + c];
+                    asciiDelta[node * ASCII + c] = next;
+                    queue.add(next);
+                } else {
+                    asciiDelta[node * ASCII + c] = asciiDelta[fail[node] * ASCII + c];
+                }
+            }
+            for (int i = 0; i < sparseChars[node].length; i++) {
+                int next = sparseTargets[node][i];
+                fail[next] = step(fail[node], sparseChars[node][i]);
+                queue.add(next);
+            }
+        }
+    }
+
+    public boolean isAlert(String packageName, CharSequence title, CharSequence text) {
+        switch (classifyPackage(packageName)) {
+            case PACKAGE_ALERT:
+                return true;
+            case PACKAGE_CONTENT:
+                return containsKeyword(title, text);
+            default:
+                return false;
+        }
+    }
+
+    /** 标题和正文中是否出现任意关键词（相当于在 title + " " + text 中查找） */
+    public boolean containsKeyword(CharSequence title, CharSequence text) {
+        int state = 0;
+        if (title != null) {
+            state = scan(state, title);
+            if (state < 0) {
+                return true;
+            }
+        }
+        state = step(state, ' ');
+        if (text != null) {
+            return scan(state, text) < 0;
+        }
+        return false;
+    }
+
+    private byte classifyPackage(String packageName) {
+        Byte cached = packageCache.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte verdict = PACKAGE_IGNORE;
+        for (String fragment : alertPackageFragments) {
+            if (packageName.contains(fragment)) {
+                verdict = PACKAGE_ALERT;
+                break;
+            }
+        }
+        if (verdict == PACKAGE_IGNORE && contentPackages.contains(packageName)) {
+            verdict = PACKAGE_CONTENT;
+        }
+
+        if (packageCache.size() < MAX_CACHED_PACKAGES) {
+            packageCache.put(packageName, verdict);
+        }
+        return verdict;
+    }
+
+    /** @return 扫描结束时的状态；命中关键词时返回 -1 */
+    private int scan(int state, CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            state = step(state, s.charAt(i));
+            if (output[state]) {
+                return -1;
+            }
+        }
+        return state;
+    }
+
+    private int step(int state, char c) {
+        if (c < ASCII) {
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            return asciiDelta[state * ASCII + c];
+        }
+        c = Character.toLowerCase(c);
+        while (true) {
+            int idx = Arrays.binarySearch(sparseChars[state], c);
+            if (idx >= 0) {
+                return sparseTargets[state][idx];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    private static int child(int node, char c, List<int[]> asciiChildren,
+                             List<List<Character>> sparseKeys, List<List<Integer>> sparseValues) {
+        if (c < ASCII) {
+            int next = asciiChildren.get(node)[c];
+            return next > 0 ? next : -1;
+        }
+        int idx = sparseKeys.get(node).indexOf(c);
+        return idx >= 0 ? sparseValues.get(node).get(idx) : -1;
+    }
+
+    private static int newNode(List<int[]> asciiChildren, List<List<Character>> sparseKeys,
+                               List<List<Integer>> sparseValues, List<Boolean> terminal) {
+        asciiChildren.add(new int[ASCII]);
+        sparseKeys.add(new ArrayList<Character>());
+        sparseValues.add(new ArrayList<Integer>());
+        terminal.add(Boolean.FALSE);
+        return asciiChildren.size() - 1;
+    }
+}
@@ -0,0 +1,452 @@
+package com.tradingview.alertapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的警报日志：记录收到、响铃、停止三种事件，进程被杀后启动时重放，
+ * 还在进行中的警报按原来的计划继续。
+ *
+ * 每条记录格式：[int 长度][int CRC32][内容]。写入立即进入页缓存（进程被杀不会丢），
+ * fsync 按 syncIntervalMs 批量做一次。重放遇到写了一半或校验失败的记录就在那里截断。
+ *
+ * 内存里同时维护一份活跃警报的快照；文件超过 compactThresholdBytes 时用快照重写，
+ * 启动时也会先压缩一次，所以文件大小只和活跃警报数量有关，重放时间不会随历史增长。
+ *
+ * 每条记录不超过 MAX_RECORD_SIZE（重放时超过的当作损坏）：key、标题、内容写入前按字节截断，
+ * 内存快照里存的也是截断后的，压缩重写时不会写出超长的记录。key 按同样的规则截断后再查找，
+ * 调用方可以一直用原来的 key；恢复出来的 {@link Entry#key} 是截断后的。
+ *
+ * 所有方法线程安全。写入失败只计数，不抛给调用方（日志不能影响报警本身）。
+ */
+public class AlertJournal {
+    private static final byte RECEIVED = 1;
+    private static final byte SOUNDED = 2;
+    private static final byte STOPPED = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    // 各字段写入的上限（modified UTF-8 字节），加起来连同类型、时间和长度前缀不超过 MAX_RECORD_SIZE
+    private static final int MAX_KEY_BYTES = 16 * 1024;
+    private static final int MAX_TITLE_BYTES = 4 * 1024;
+    private static final int MAX_MESSAGE_BYTES = 32 * 1024;
+    private static final int MAX_PROFILE_BYTES = 1024;
+
+    /** 重放后仍然活跃的警报 */
+    public static final class Entry {
+        public final String key;
+        public final String title;
+        public final String message;
+        public final String profile;
+        /** 收到时间（System.currentTimeMillis，重启后仍然有效） */
+        public final long receivedAt;
+        /** 已经开始的轮数，0 表示收到了但还没响过 */
+        public int round;
+        /** 最近一轮开始的时间（System.currentTimeMillis） */
+        public long roundStartedAt;
+
+        Entry(String key, String title, String message, String profile, long receivedAt) {
+            this.key = key;
+            this.title = title;
+            this.message = message;
+            this.profile = profile;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private final File file;
+    private final long syncIntervalMs;
+    private final long compactThresholdBytes;
+    private final long maxEntryAgeMs;
+    private final ScheduledExecutorService syncer;
+
+    private final Map<String, Entry> live = new LinkedHashMap<>();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    // 上次压缩后的大小；活跃警报很多时按它的两倍再压缩，避免每次写入都压缩
+    private long compactedSize;
+    private boolean dirty;
+    private boolean syncScheduled;
+    private boolean compactScheduled;
+    private boolean closed;
+
+    // 统计
+    private long appended;
+    private long syncs;
+    private long compactions;
+    private long writeFailures;
+    private IOException lastError;
+    private long recoveryNanos = -1;
+    private int recoveredRecords;
+    private long recoveredBytes;
+    private long truncatedBytes;
+
+    public AlertJournal(File file, long syncIntervalMs, long compactThresholdBytes, long maxEntryAgeMs) {
+        this.file = file;
+        this.syncIntervalMs = syncIntervalMs;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.maxEntryAgeMs = maxEntryAgeMs;
+        this.syncer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AlertJournal");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * 打开日志并重放，截掉末尾损坏的记录，然后压缩成只含活跃警报的快照。
+     * 必须在第一次写入之前调用。
+     *
+     * @return 重放后仍然活跃的警报，按收到顺序
+     */
+    public synchronized List<Entry> recover() throws IOException {
+        long start = System.nanoTime();
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // 读满为止
+        }
+        buffer.flip();
+
+        int records = 0;
+        long good = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > buffer.remaining() - HEADER_SIZE) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position() + HEADER_SIZE, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(
+                    buffer.array(), buffer.position() + HEADER_SIZE, length)));
+            } catch (IOException e) {
+                // 校验通过但内容无法解析（比如更新版本写的记录），同样当作损坏
+                break;
+            }
+            buffer.position(buffer.position() + HEADER_SIZE + length);
+            good = buffer.position();
+            records++;
+        }
+
+        recoveredRecords = records;
+        recoveredBytes = good;
+        truncatedBytes = size - good;
+        dropExpired(System.currentTimeMillis());
+        compactLocked();
+        recoveryNanos = System.nanoTime() - start;
+        return new ArrayList<>(live.values());
+    }
+
+    /** 重放一条记录，更新活跃快照 */
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long time = in.readLong();
+        String key = in.readUTF();
+        switch (type) {
+            case RECEIVED:
+                String title = in.readUTF();
+                String message = in.readUTF();
+                String profile = in.readUTF();
+                live.remove(key);
+                live.put(key, new Entry(key, title, message, profile, time));
+                break;
+            case SOUNDED:
+                Entry entry = live.get(key);
+                if (entry != null) {
+                    entry.round = in.readInt();
+                    entry.roundStartedAt = in.readLong();
+                }
+                break;
+            case STOPPED:
+                live.remove(key);
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    public void received(String key, String title, String message, String profile) {
+        long now = System.currentTimeMillis();
+        key = fit(key, MAX_KEY_BYTES);
+        title = fit(title, MAX_TITLE_BYTES);
+        message = fit(message, MAX_MESSAGE_BYTES);
+        profile = fit(profile, MAX_PROFILE_BYTES);
+        synchronized (this) {
+            // 先编码，写不出来的记录不进快照，否则之后每次压缩都会在它上面失败
+            try {
+                beginRecord(RECEIVED, now, key);
+                record.writeUTF(title);
+                record.writeUTF(message);
+                record.writeUTF(profile);
+            } catch (IOException e) {
+                failedLocked(e);
+                return;
+            }
+            live.remove(key);
+            live.put(key, new Entry(key, title, message, profile, now));
+            try {
+                appendRecordLocked();
+            } catch (IOException e) {
+                failedLocked(e);
+            }
+        }
+    }
+
+    public void sounded(String key, int round, long roundStartedAt) {
+        long now = System.currentTimeMillis();
+        key = fit(key, MAX_KEY_BYTES);
+        synchronized (this) {
+            Entry entry = live.get(key);
+            if (entry == null) {
+                return;
+            }
+            entry.round = round;
+            entry.roundStartedAt = roundStartedAt;
+            try {
+                beginRecord(SOUNDED, now, key);
+                record.writeInt(round);
+                record.writeLong(roundStartedAt);
+                appendRecordLocked();
+            } catch (IOException e) {
+                failedLocked(e);
+            }
+        }
+    }
+
+    /** 手动停止和重复结束都记为停止，之后不会再被恢复 */
+    public void stopped(String key) {
+        long now = System.currentTimeMillis();
+        key = fit(key, MAX_KEY_BYTES);
+        synchronized (this) {
+            if (live.remove(key) == null) {
+                return;
+            }
+            try {
+                beginRecord(STOPPED, now, key);
+                appendRecordLocked();
+            } catch (IOException e) {
+                failedLocked(e);
+            }
+        }
+    }
+
+    /**
+     * 截断到 writeUTF 编码后不超过 maxBytes 字节（modified UTF-8：\0 两个字节，代理对各三个字节），
+     * 不拆开代理对。已经够短的原样返回，所以对截断后的结果再调用一次结果不变
+     */
+    static String fit(String s, int maxBytes) {
+        if (s == null || s.length() * 3 <= maxBytes) {
+            return s;
+        }
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            bytes += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+            if (bytes > maxBytes) {
+                if (i > 0 && Character.isHighSurrogate(s.charAt(i - 1))) {
+                    i--;
+                }
+                return s.substring(0, i);
+            }
+        }
+        return s;
+    }
+
+    private void beginRecord(byte type, long time, String key) throws IOException {
+        recordBytes.reset();
+        record.writeByte(type);
+        record.writeLong(time);
+        record.writeUTF(key);
+    }
+
+    private void appendRecordLocked() throws IOException {
+        if (channel == null || closed) {
+            return;
+        }
+        writeRecord(channel, channel.size());
+        appended++;
+        dirty = true;
+        if (!syncScheduled) {
+            syncScheduled = true;
+            syncer.schedule(this::sync, syncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        long size = channel.size();
+        if (!compactScheduled && size > compactThresholdBytes && size > compactedSize * 2) {
+            compactScheduled = true;
+            syncer.execute(this::compact);
+        }
+    }
+
+    /** 把 recordBytes 里的内容加上长度和校验写到 position */
+    private long writeRecord(FileChannel target, long position) throws IOException {
+        int length = recordBytes.size();
+        if (length > MAX_RECORD_SIZE) {
+            // 字段都截断过，不应该发生；写进去的话重放会在这里截断，丢掉后面所有记录
+            throw new IOException("Journal record too large: " + length + " bytes");
+        }
+        byte[] bytes = recordBytes.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length).putInt((int) crc.getValue()).put(bytes, 0, length);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+        return position;
+    }
+
+    private void failedLocked(IOException e) {
+        writeFailures++;
+        lastError = e;
+    }
+
+    /** 把已写入的记录刷到磁盘 */
+    public synchronized void sync() {
+        syncScheduled = false;
+        if (!dirty || channel == null || closed) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+            syncs++;
+        } catch (IOException e) {
+            failedLocked(e);
+        }
+    }
+
+    private synchronized void compact() {
+        compactScheduled = false;
+        if (channel == null || closed) {
+            return;
+        }
+        try {
+            dropExpired(System.currentTimeMillis());
+            compactLocked();
+        } catch (IOException e) {
+            failedLocked(e);
+        }
+    }
+
+    /** 进程崩溃时可能漏掉停止记录，太旧的警报不再恢复，也不再保留 */
+    private void dropExpired(long now) {
+        Iterator<Entry> it = live.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().receivedAt > maxEntryAgeMs) {
+                it.remove();
+            }
+        }
+    }
+
+    /** 用活跃快照写一个新文件，fsync 后原子地替换旧文件 */
+    private void compactLocked() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            raf.setLength(0);
+            FileChannel out = raf.getChannel();
+            long position = 0;
+            for (Entry entry : live.values()) {
+                beginRecord(RECEIVED, entry.receivedAt, entry.key);
+                record.writeUTF(entry.title);
+                record.writeUTF(entry.message);
+                record.writeUTF(entry.profile);
+                position = writeRecord(out, position);
+                if (entry.round > 0) {
+                    beginRecord(SOUNDED, entry.roundStartedAt, entry.key);
+                    record.writeInt(entry.round);
+                    record.writeLong(entry.roundStartedAt);
+                    position = writeRecord(out, position);
+                }
+            }
+            out.force(true);
+        }
+
+        channel.close();
+        // 同一目录内 rename 是原子的：崩溃时要么是旧文件，要么是完整的新文件
+        if (!tmp.renameTo(file)) {
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            throw new IOException("Cannot replace " + file);
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        compactedSize = channel.size();
+        dirty = false;
+        compactions++;
+    }
+
+    public synchronized void close() {
+        sync();
+        closed = true;
+        syncer.shutdown();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failedLocked(e);
+            }
+        }
+    }
+
+    public synchronized int getLiveCount() {
+        return live.size();
+    }
+
+    /** 上次 recover() 的耗时（毫秒），还没恢复过时为 -1 */
+    public synchronized long getRecoveryMs() {
+        return recoveryNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(recoveryNanos);
+    }
+
+    public synchronized long getWriteFailures() {
+        return writeFailures;
+    }
+
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AlertJournal{live=" + live.size()
+            + ", recovered=" + recoveredRecords + " records/" + recoveredBytes + "B"
+            + (truncatedBytes > 0 ? " (truncated " + truncatedBytes + "B)" : "")
+            + " in " + (recoveryNanos / 1000) + "us"
+            + ", appended=" + appended
+            + ", syncs=" + syncs
+            + ", compactions=" + compactions
+            + ", failures=" + writeFailures + "}";
+    }
+}
@@ -0,0 +1,401 @@
+package com.tradingview.alertapp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 流式解析轮询/推送返回的 JSON，直接从 InputStream 取出每条警报的 id、subject 和 from。
+ *
+ * 支持两种形状：
+ *   {"count": 2, "alerts": [{"id": 17, "subject": "...", "from": "..."}, ...]}
+ *   {"id": "17", "subject": "...", "from": "..."}
+ *
+ * id 可以是字符串或数字，统一作为字符串交给回调；旧服务器没有 id 时为 null。
+ * 可选的 time 是服务器收到警报的时间（毫秒，小于 1e12 时按秒处理），没有时为 0。
+ *
+ * 每解析完一条警报就立即回调，不需要先把整个响应读进内存。
+ * 读缓冲和字符缓冲在多次调用之间复用，除了提取出的字段字符串以外不分配对象；
+ * 其他字段（包括任意嵌套的值）只扫描跳过。同一个实例不能被多个线程同时使用。
+ */
+public class AlertJsonReader {
+
+    public interface AlertHandler {
+        void onAlert(String id, String subject, String from, long time);
+    }
+
+    private static final char[] KEY_ALERTS = "alerts".toCharArray();
+    private static final char[] KEY_SUBJECT = "subject".toCharArray();
+    private static final char[] KEY_FROM = "from".toCharArray();
+    private static final char[] KEY_ID = "id".toCharArray();
+    private static final char[] KEY_TIME = "time".toCharArray();
+
+    private final byte[] buffer = new byte[8192];
+    private char[] chars = new char[256];
+    private int charCount;
+
+    private InputStream in;
+    private int pos;
+    private int limit;
+    private long consumed;
+
+    private AlertHandler handler;
+    private int alertCount;
+
+    /**
+     * 解析一个 JSON 文档并对其中每条警报回调 handler。
+     *
+     * @return 回调的警报数量
+     * @throws IOException 读取失败、JSON 格式错误或内容被截断
+     */
+    public int read(InputStream in, AlertHandler handler) throws IOException {
+        this.in = in;
+        this.handler = handler;
+        this.pos = 0;
+        this.limit = 0;
+        this.consumed = 0;
+        this.alertCount = 0;
+        try {
+            if (nextToken() != '{') {
+                throw syntaxError("Expected top-level object");
+            }
+            readAlertObject(true);
+            return alertCount;
+        } finally {
+            this.in = null;
+            this.handler = null;
+        }
+    }
+
+    /**
+     * 读取一个对象（左花括号已消费）。带有 subject 的对象视为一条警报。
+     */
+    private void readAlertObject(boolean topLevel) throws IOException {
+        String id = null;
+        String subject = null;
+        String from = null;
+        long time = 0;
+
+        int c = nextToken();
+        if (c != '}') {
+            while (true) {
+                if (c != '"') {
+                    throw syntaxError("Expected field name");
+                }
+                readStringIntoChars();
+                if (nextToken() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+
+                if (charsEqual(KEY_SUBJECT)) {
+                    subject = readStringOrNull();
+                } else if (charsEqual(KEY_FROM)) {
+                    from = readStringOrNull();
+                } else if (charsEqual(KEY_ID)) {
+                    id = readIdOrNull();
+                } else if (charsEqual(KEY_TIME)) {
+                    time = parseTime(readIdOrNull());
+                } else if (topLevel && charsEqual(KEY_ALERTS)) {
+                    readAlertArray();
+                } else {
+                    skipValue(nextToken());
+                }
+
+                c = nextToken();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                c = nextToken();
+            }
+        }
+
+        if (subject != null) {
+            alertCount++;
+            handler.onAlert(id, subject, from != null ? from : "", time);
+        }
+    }
+
+    private static long parseTime(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            double t = Double.parseDouble(value);
+            return (long) (t < 1e12 ? t * 1000 : t);
+        } catch (NumberFormatException e) {
+            // 不认识的格式只影响延迟统计，不影响警报
+            return 0;
+        }
+    }
+
+    private void readAlertArray() throws IOException {
+        int c = nextToken();
+        if (c == 'n') {
+            expectLiteral("ull");
+            return;
+        }
+        if (c != '[') {
+            throw syntaxError("Expected alerts array");
+        }
+        c = nextToken();
+        if (c == ']') {
+            return;
+        }
+        while (true) {
+            if (c == '{') {
+                readAlertObject(false);
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == ']') {
+                return;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected ',' or ']'");
+            }
+            c = nextToken();
+        }
+    }
+
+    private String readStringOrNull() throws IOException {
+        int c = nextToken();
+        if (c == '"') {
+            readStringIntoChars();
+            return new String(chars, 0, charCount);
+        }
+        skipValue(c);
+        return null;
+    }
+
+    private String readIdOrNull() throws IOException {
+        int c = nextToken();
+        if (c == '"') {
+            readStringIntoChars();
+            return new String(chars, 0, charCount);
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            charCount = 0;
+            appendChar((char) c);
+            while (true) {
+                int next = peek();
+                if (next < '0' || next > '9') {
+                    break;
+                }
+                appendChar((char) next);
+                pos++;
+            }
+            // 非整数的 id 不合规，剩下的部分按数字跳过
+            skipNumber();
+            return new String(chars, 0, charCount);
+        }
+        skipValue(c);
+        return null;
+    }
+
+    /** 跳过一个任意值，c 是它的第一个非空白字符 */
+    private void skipValue(int c) throws IOException {
+        switch (c) {
+            case '"':
+                skipString();
+                return;
+            case '{':
+            case '[':
+                skipContainer();
+                return;
+            case 't':
+                expectLiteral("rue");
+                return;
+            case 'f':
+                expectLiteral("alse");
+                return;
+            case 'n':
+                expectLiteral("ull");
+                return;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    skipNumber();
+                    return;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void skipContainer() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private void skipNumber() throws IOException {
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    /** 读取字符串内容（开头的引号已消费），UTF-8 解码到复用的 chars 缓冲 */
+    private void readStringIntoChars() throws IOException {
+        charCount = 0;
+        while (true) {
+            int b = read();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                appendChar(readEscape());
+            } else if (b < 0x80) {
+                appendChar((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                appendChar((char) (((b & 0x1F) << 6) | continuation()));
+            } else if ((b & 0xF0) == 0xE0) {
+                int c2 = continuation();
+                appendChar((char) (((b & 0x0F) << 12) | (c2 << 6) | continuation()));
+            } else if ((b & 0xF8) == 0xF0) {
+                int c2 = continuation();
+                int c3 = continuation();
+                int codePoint = ((b & 0x07) << 18) | (c2 << 12) | (c3 << 6) | continuation();
+                appendChar(Character.highSurrogate(codePoint));
+                appendChar(Character.lowSurrogate(codePoint));
+            } else {
+                throw syntaxError("Invalid UTF-8 byte");
+            }
+        }
+    }
+
+    private int continuation() throws IOException {
+        int b = read();
+        if ((b & 0xC0) != 0x80) {
+            throw syntaxError("Invalid UTF-8 continuation");
+        }
+        return b & 0x3F;
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid \\u escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    private void appendChar(char c) {
+        if (charCount == chars.length) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, charCount);
+            chars = grown;
+        }
+        chars[charCount++] = c;
+    }
+
+    private boolean charsEqual(char[] key) {
+        if (charCount != key.length) {
+            return false;
+        }
+        for (int i = 0; i < charCount; i++) {
+            if (chars[i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    /** 跳过空白，返回并消费下一个字符 */
+    private int nextToken() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw new EOFException("Truncated JSON at offset " + consumed);
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at offset " + (consumed + pos));
+    }
+}
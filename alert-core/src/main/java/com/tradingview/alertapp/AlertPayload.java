@@ -0,0 +1,238 @@
+package com.tradingview.alertapp;
+
+import java.util.Locale;
+
+/**
+ * 从警报标题和内容里解析出的结构化字段，由 {@link AlertPayloadParser} 生成。
+ *
+ * 没解析出来的字段为 null（price 为 NaN，direction 为 NONE）。构造后不可变，可以跨线程传递。
+ */
+public final class AlertPayload {
+
+    public enum Direction {
+        NONE, UP, DOWN,
+        /** 只知道是穿越，不知道方向 */
+        CROSS
+    }
+
+    public static final AlertPayload EMPTY = new Builder().build(null);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** 解析成功的模板名，什么都没解析出来时为 null */
+    public final String template;
+    public final String exchange;
+    public final String ticker;
+    /** "交易所:代码"，没有交易所时就是代码 */
+    public final String symbol;
+    /** 原文里的周期写法（15m、1h、1D、60） */
+    public final String interval;
+    public final double price;
+    public final Direction direction;
+    /** 原文里的条件（Crossing Up、Greater Than、order buy） */
+    public final String condition;
+    public final String strategy;
+
+    private AlertPayload(Builder b, String template) {
+        this.template = template;
+        this.exchange = b.exchange;
+        this.ticker = b.ticker;
+        this.symbol = b.ticker == null ? null : b.exchange == null ? b.ticker : b.exchange + ":" + b.ticker;
+        this.interval = b.interval;
+        this.price = b.price;
+        this.direction = b.direction;
+        this.condition = b.condition;
+        this.strategy = b.strategy;
+    }
+
+    public boolean hasSymbol() {
+        return symbol != null;
+    }
+
+    public boolean hasPrice() {
+        return !Double.isNaN(price);
+    }
+
+    /**
+     * 内容指纹：同一次触发从不同路径（TradingView 应用、邮件、轮询）送达时相同，
+     * 用于跨来源去重。只看代码、策略、方向和规范化后的条件：
+     * 交易所、周期、价格在不同路径的写法里不一定都有，不参与哈希；
+     * 两份都带价格或周期而且不同时，{@link FingerprintWindow} 把它们当作不同的触发。没有品种时为 0。
+     */
+    public long fingerprint() {
+        if (ticker == null) {
+            return 0;
+        }
+        long h = FNV_OFFSET;
+        for (int i = 0; i < ticker.length(); i++) {
+            h = (h ^ Character.toUpperCase(ticker.charAt(i))) * FNV_PRIME;
+        }
+        h = (h ^ 0xff) * FNV_PRIME;
+        h = hashLower(h, strategy);
+        h = (h ^ direction.ordinal()) * FNV_PRIME;
+        if (condition != null) {
+            // 同一个条件的不同说法：Crossing Up / crosses above / crossed up 都是 "cross up"
+            for (String word : condition.split(" ")) {
+                String w = word.toLowerCase(Locale.ROOT);
+                if (w.startsWith("cross")) {
+                    w = "cross";
+                } else if (w.equals("above")) {
+                    w = "up";
+                } else if (w.equals("below")) {
+                    w = "down";
+                }
+                h = hashLower(h, w);
+            }
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /** 周期换算成秒（15m、1h、1D、60 这些写法，纯数字按分钟），没有或认不出时为 0 */
+    public int intervalSeconds() {
+        if (interval == null || interval.isEmpty()) {
+            return 0;
+        }
+        int n = interval.length();
+        char unit = interval.charAt(n - 1);
+        int digitsEnd = unit >= '0' && unit <= '9' ? n : n - 1;
+        if (digitsEnd > 6) {
+            return 0;
+        }
+        int count = digitsEnd == 0 ? 1 : 0;
+        for (int i = 0; i < digitsEnd; i++) {
+            char c = interval.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            count = count * 10 + (c - '0');
+        }
+        switch (unit) {
+            case 's': case 'S': return count;
+            case 'm': return count * 60;
+            case 'h': case 'H': return count * 3600;
+            case 'd': case 'D': return count * 86400;
+            case 'w': case 'W': return count * 604800;
+            // TradingView 的 1M 是月
+            case 'M': return count * 2592000;
+            default: return digitsEnd == n ? count * 60 : 0;
+        }
+    }
+
+    private static long hashLower(long h, String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                h = (h ^ Character.toLowerCase(s.charAt(i))) * FNV_PRIME;
+            }
+        }
+        return (h ^ 0xff) * FNV_PRIME;
+    }
+
+    /** 给通知用的一行摘要，比如 "BINANCE:BTCUSDT Crossing Up 65000 (1h)"；没有品种时为 null */
+    public String describe() {
+        if (symbol == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(symbol);
+        if (strategy != null) {
+            sb.append(" [").append(strategy).append(']');
+        }
+        if (condition != null) {
+            sb.append(' ').append(condition);
+        }
+        if (hasPrice()) {
+            sb.append(' ');
+            if (price == Math.rint(price) && Math.abs(price) < 1e15) {
+                sb.append((long) price);
+            } else {
+                sb.append(price);
+            }
+        }
+        if (interval != null) {
+            sb.append(" (").append(interval).append(')');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "AlertPayload{" + template + ": " + describe() + ", direction=" + direction + "}";
+    }
+
+    /**
+     * 模板往里面填字段。解析器每次解析复用同一个实例，{@link #reset} 后重新填写。
+     */
+    public static final class Builder {
+        String exchange;
+        String ticker;
+        String interval;
+        double price = Double.NaN;
+        Direction direction = Direction.NONE;
+        String condition;
+        String strategy;
+
+        void reset() {
+            exchange = null;
+            ticker = null;
+            interval = null;
+            price = Double.NaN;
+            direction = Direction.NONE;
+            condition = null;
+            strategy = null;
+        }
+
+        /** "BINANCE:BTCUSDT" 或 "BTCUSDT" */
+        public Builder symbol(String symbol) {
+            int colon = symbol.indexOf(':');
+            if (colon > 0) {
+                exchange = symbol.substring(0, colon);
+                ticker = symbol.substring(colon + 1);
+            } else {
+                ticker = symbol;
+            }
+            return this;
+        }
+
+        public Builder exchange(String exchange) {
+            this.exchange = exchange;
+            return this;
+        }
+
+        public Builder interval(String interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder price(double price) {
+            this.price = price;
+            return this;
+        }
+
+        public Builder direction(Direction direction) {
+            this.direction = direction;
+            return this;
+        }
+
+        public Builder condition(String condition) {
+            this.condition = condition;
+            return this;
+        }
+
+        public Builder strategy(String strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        public boolean hasSymbol() {
+            return ticker != null;
+        }
+
+        public boolean hasPrice() {
+            return !Double.isNaN(price);
+        }
+
+        AlertPayload build(String template) {
+            return new AlertPayload(this, template);
+        }
+    }
+}
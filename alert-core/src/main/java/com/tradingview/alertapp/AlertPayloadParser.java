@@ -0,0 +1,390 @@
+package com.tradingview.alertapp;
+
+/**
+ * 把 TradingView 通知标题、邮件主题和轮询负载解析成 {@link AlertPayload}：
+ * 品种（交易所:代码）、周期、价格、条件/方向和策略名。
+ *
+ * 标题和内容只切一遍词（{@link AlertTokenizer}，不复制字符串），然后按顺序交给各个模板，
+ * 第一个认出来的模板生效；只有最终取出的字段才会分配字符串。
+ * 内置模板：
+ * - key=value：自定义警报消息，比如 "ticker=BTCUSDT tf=60 price=65000 side=buy strategy=Breakout"
+ * - 策略成交：TradingView 策略的默认消息 "My Strategy: order buy @ 1 filled on BTCUSDT"
+ * - 通用：价格/指标警报（"BINANCE:BTCUSDT, 1h Crossing Up 65,000.00"、
+ *   "Your alert on ETHUSDT was triggered: Greater Than 3500"）
+ *
+ * 可以传入自己的模板（放在内置模板前面）。同一个实例不能被多个线程同时使用。
+ */
+public class AlertPayloadParser {
+
+    /** 一种警报格式。认出来时往 out 里填字段并返回 true；返回 false 时填的内容会被丢弃 */
+    public interface Template {
+        String name();
+
+        boolean parse(AlertTokenizer tokens, AlertPayload.Builder out);
+    }
+
+    // 全大写但不是品种代码的常见词
+    private static final String[] NOT_SYMBOLS = {
+        "alert", "tradingview", "buy", "sell", "long", "short", "entry", "exit", "tp", "sl",
+        "rsi", "ema", "sma", "macd", "vwap", "atr", "adx", "cci", "bb"
+    };
+
+    // 条件短语和方向，同一位置先匹配较长的
+    private static final String[][] PHRASES = {
+        {"crossing", "up"}, {"crosses", "up"}, {"crossed", "up"},
+        {"crossing", "above"}, {"crosses", "above"}, {"crossed", "above"},
+        {"crossing", "down"}, {"crosses", "down"}, {"crossed", "down"},
+        {"crossing", "below"}, {"crosses", "below"}, {"crossed", "below"},
+        {"greater", "than"}, {"less", "than"}, {"moving", "up"}, {"moving", "down"},
+        {"entering", "channel"}, {"exiting", "channel"}, {"inside", "channel"}, {"outside", "channel"},
+        {"crossing"}, {"crosses"}, {"crossed"}, {"cross"},
+        {"above"}, {"below"}, {"entering"}, {"exiting"},
+        {"buy"}, {"long"}, {"bullish"}, {"sell"}, {"short"}, {"bearish"},
+    };
+    private static final AlertPayload.Direction[] PHRASE_DIRECTIONS = {
+        AlertPayload.Direction.UP, AlertPayload.Direction.UP, AlertPayload.Direction.UP,
+        AlertPayload.Direction.UP, AlertPayload.Direction.UP, AlertPayload.Direction.UP,
+        AlertPayload.Direction.DOWN, AlertPayload.Direction.DOWN, AlertPayload.Direction.DOWN,
+        AlertPayload.Direction.DOWN, AlertPayload.Direction.DOWN, AlertPayload.Direction.DOWN,
+        AlertPayload.Direction.UP, AlertPayload.Direction.DOWN, AlertPayload.Direction.UP, AlertPayload.Direction.DOWN,
+        AlertPayload.Direction.UP, AlertPayload.Direction.DOWN, AlertPayload.Direction.NONE, AlertPayload.Direction.NONE,
+        AlertPayload.Direction.CROSS, AlertPayload.Direction.CROSS, AlertPayload.Direction.CROSS,
+        AlertPayload.Direction.CROSS,
+        AlertPayload.Direction.UP, AlertPayload.Direction.DOWN, AlertPayload.Direction.UP, AlertPayload.Direction.DOWN,
+        AlertPayload.Direction.UP, AlertPayload.Direction.UP, AlertPayload.Direction.UP,
+        AlertPayload.Direction.DOWN, AlertPayload.Direction.DOWN, AlertPayload.Direction.DOWN,
+    };
+
+    private final Template[] templates;
+    private final AlertTokenizer tokens = new AlertTokenizer();
+    private final AlertPayload.Builder builder = new AlertPayload.Builder();
+
+    private long parsed;
+    private long unrecognized;
+
+    /** 只用内置模板 */
+    public AlertPayloadParser() {
+        this(new Template[0]);
+    }
+
+    /** custom 里的模板先于内置模板尝试 */
+    public AlertPayloadParser(Template... custom) {
+        Template[] builtIn = {KEY_VALUE, STRATEGY_ORDER, GENERIC};
+        templates = new Template[custom.length + builtIn.length];
+        System.arraycopy(custom, 0, templates, 0, custom.length);
+        System.arraycopy(builtIn, 0, templates, custom.length, builtIn.length);
+    }
+
+    /** 什么都没认出来时返回 {@link AlertPayload#EMPTY} */
+    public AlertPayload parse(CharSequence title, CharSequence message) {
+        tokens.reset();
+        tokens.tokenize(title);
+        tokens.tokenize(message);
+        try {
+            for (Template template : templates) {
+                builder.reset();
+                if (template.parse(tokens, builder)) {
+                    parsed++;
+                    return builder.build(template.name());
+                }
+            }
+            unrecognized++;
+            return AlertPayload.EMPTY;
+        } finally {
+            // 不持有调用方的字符串
+            tokens.reset();
+        }
+    }
+
+    public long getParsedCount() {
+        return parsed;
+    }
+
+    public long getUnrecognizedCount() {
+        return unrecognized;
+    }
+
+    // ---- 模板用到的词法判断 ----
+
+    /** 带交易所前缀的品种：BINANCE:BTCUSDT、CME_MINI:ES1! */
+    public static boolean isQualifiedSymbol(AlertTokenizer tokens, int token) {
+        if (tokens.kind(token) != AlertTokenizer.WORD) {
+            return false;
+        }
+        int colon = tokens.indexOf(token, ':');
+        if (colon <= 0 || colon >= tokens.length(token) - 1) {
+            return false;
+        }
+        // 12:30 这样的时间不算
+        boolean letter = false;
+        for (int i = colon + 1; i < tokens.length(token); i++) {
+            char c = tokens.charAt(token, i);
+            if (c >= 'a' && c <= 'z') {
+                return false;
+            }
+            letter |= c >= 'A' && c <= 'Z';
+        }
+        return letter && !hasLowerCase(tokens, token);
+    }
+
+    /** 不带前缀的品种：全大写、含字母、3~20 个字符，且不是常见缩写 */
+    public static boolean isBareSymbol(AlertTokenizer tokens, int token) {
+        if (tokens.kind(token) != AlertTokenizer.WORD) {
+            return false;
+        }
+        int len = tokens.length(token);
+        if (len < 3 || len > 20 || tokens.indexOf(token, ':') >= 0 || hasLowerCase(tokens, token)) {
+            return false;
+        }
+        boolean letter = false;
+        for (int i = 0; i < len; i++) {
+            char c = tokens.charAt(token, i);
+            if (c >= 'A' && c <= 'Z') {
+                letter = true;
+            } else if (!(c >= '0' && c <= '9') && c != '.' && c != '!' && c != '_' && c != '-') {
+                return false;
+            }
+        }
+        if (!letter) {
+            return false;
+        }
+        for (String word : NOT_SYMBOLS) {
+            if (tokens.is(token, word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasLowerCase(AlertTokenizer tokens, int token) {
+        for (int i = 0; i < tokens.length(token); i++) {
+            char c = tokens.charAt(token, i);
+            if (c >= 'a' && c <= 'z') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 周期：15m、1h、4H、1D、1W、30s（数字加一个单位字母） */
+    public static boolean isInterval(AlertTokenizer tokens, int token) {
+        if (tokens.kind(token) != AlertTokenizer.WORD) {
+            return false;
+        }
+        int len = tokens.length(token);
+        if (len < 2 || len > 4) {
+            return false;
+        }
+        for (int i = 0; i < len - 1; i++) {
+            char c = tokens.charAt(token, i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return "smhHdDwWM".indexOf(tokens.charAt(token, len - 1)) >= 0;
+    }
+
+    /** 第一个品种：优先带交易所前缀的；没有时为 -1 */
+    public static int findSymbol(AlertTokenizer tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (isQualifiedSymbol(tokens, i)) {
+                return i;
+            }
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            if (isBareSymbol(tokens, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从 from 开始找第一个条件短语，找到时填 condition 和 direction。
+     *
+     * @return 短语最后一个词的位置，没有时为 -1
+     */
+    public static int findCondition(AlertTokenizer tokens, int from, AlertPayload.Builder out) {
+        for (int i = Math.max(0, from); i < tokens.size(); i++) {
+            if (tokens.kind(i) != AlertTokenizer.WORD) {
+                continue;
+            }
+            for (int p = 0; p < PHRASES.length; p++) {
+                String[] phrase = PHRASES[p];
+                int last = i + phrase.length - 1;
+                if (last >= tokens.size() || tokens.segment(last) != tokens.segment(i)) {
+                    continue;
+                }
+                boolean match = true;
+                for (int w = 0; w < phrase.length && match; w++) {
+                    match = tokens.is(i + w, phrase[w]);
+                }
+                if (match) {
+                    out.condition(tokens.text(i, last)).direction(PHRASE_DIRECTIONS[p]);
+                    return last;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** 从 from 开始第一个不是百分比的数字，没有时为 -1 */
+    public static int findPrice(AlertTokenizer tokens, int from) {
+        for (int i = Math.max(0, from); i < tokens.size(); i++) {
+            if (tokens.kind(i) == AlertTokenizer.NUMBER && !tokens.isPunct(i + 1, '%')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ---- 内置模板 ----
+
+    /** ticker=BTCUSDT exchange=BINANCE tf=60 price=65000 side=buy strategy=Breakout v2，至少两个已知键 */
+    static final Template KEY_VALUE = new Template() {
+        @Override
+        public String name() {
+            return "key-value";
+        }
+
+        @Override
+        public boolean parse(AlertTokenizer tokens, AlertPayload.Builder out) {
+            int keys = 0;
+            int n = tokens.size();
+            for (int i = 0; i + 2 < n; i++) {
+                if (tokens.kind(i) != AlertTokenizer.WORD || !tokens.isPunct(i + 1, '=')) {
+                    continue;
+                }
+                // 值一直到下一个 "键=" 或这一段结束，去掉末尾的分隔符
+                int first = i + 2;
+                int last = first;
+                while (last + 1 < n && tokens.segment(last + 1) == tokens.segment(first)
+                        && !(tokens.kind(last + 1) == AlertTokenizer.WORD && tokens.isPunct(last + 2, '='))) {
+                    last++;
+                }
+                while (last > first && tokens.kind(last) == AlertTokenizer.PUNCT) {
+                    last--;
+                }
+                if (tokens.segment(first) != tokens.segment(i)) {
+                    continue;
+                }
+
+                if (tokens.is(i, "ticker") || tokens.is(i, "symbol")) {
+                    out.symbol(tokens.text(first, last));
+                } else if (tokens.is(i, "exchange")) {
+                    out.exchange(tokens.text(first, last));
+                } else if (tokens.is(i, "interval") || tokens.is(i, "tf") || tokens.is(i, "timeframe")) {
+                    out.interval(tokens.text(first, last));
+                } else if (tokens.is(i, "price") || tokens.is(i, "close")) {
+                    out.price(tokens.number(first));
+                } else if (tokens.is(i, "side") || tokens.is(i, "direction") || tokens.is(i, "action")) {
+                    findCondition(tokens, first, out);
+                    out.condition(tokens.text(first, last));
+                } else if (tokens.is(i, "strategy")) {
+                    out.strategy(tokens.text(first, last));
+                } else if (tokens.is(i, "condition")) {
+                    out.condition(tokens.text(first, last));
+                } else {
+                    continue;
+                }
+                keys++;
+                i = last;
+            }
+            return keys >= 2 && out.hasSymbol();
+        }
+    };
+
+    /** 策略成交："My Strategy (14, 2): order buy @ 1 filled on BINANCE:BTCUSDT. New strategy position is 1" */
+    static final Template STRATEGY_ORDER = new Template() {
+        @Override
+        public String name() {
+            return "strategy-order";
+        }
+
+        @Override
+        public boolean parse(AlertTokenizer tokens, AlertPayload.Builder out) {
+            int n = tokens.size();
+            for (int i = 0; i + 1 < n; i++) {
+                if (!tokens.is(i, "order") || !(tokens.is(i + 1, "buy") || tokens.is(i + 1, "sell"))) {
+                    continue;
+                }
+                int on = -1;
+                for (int j = i + 2; j + 1 < n && tokens.segment(j) == tokens.segment(i); j++) {
+                    if (tokens.is(j, "filled") && tokens.is(j + 1, "on")) {
+                        on = j + 1;
+                        break;
+                    }
+                }
+                if (on < 0 || on + 1 >= n || tokens.kind(on + 1) != AlertTokenizer.WORD) {
+                    return false;
+                }
+                out.symbol(tokens.text(on + 1));
+                out.condition(tokens.text(i, i + 1));
+                out.direction(tokens.is(i + 1, "buy") ? AlertPayload.Direction.UP : AlertPayload.Direction.DOWN);
+
+                // 策略名：同一段里 "order" 前面冒号之前的部分，没有时用标题
+                int colon = i - 1;
+                if (tokens.isPunct(colon, ':') && colon > 0 && tokens.segment(colon - 1) == tokens.segment(i)) {
+                    int first = colon - 1;
+                    while (first > 0 && tokens.segment(first - 1) == tokens.segment(i)) {
+                        first--;
+                    }
+                    out.strategy(tokens.text(first, colon - 1));
+                } else if (tokens.segment(i) > 0 && tokens.segment(0) == 0 && tokens.segment(i - 1) == 0) {
+                    int last = i - 1;
+                    while (last > 0 && tokens.kind(last) == AlertTokenizer.PUNCT) {
+                        last--;
+                    }
+                    out.strategy(tokens.text(0, last));
+                }
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /** 价格/指标警报：品种 + 可选的周期、条件和价格，至少要有品种 */
+    static final Template GENERIC = new Template() {
+        @Override
+        public String name() {
+            return "tradingview";
+        }
+
+        @Override
+        public boolean parse(AlertTokenizer tokens, AlertPayload.Builder out) {
+            int symbol = findSymbol(tokens);
+            if (symbol < 0) {
+                return false;
+            }
+            out.symbol(tokens.text(symbol));
+
+            // 周期：任意位置的 15m/1h，或者紧跟在品种后面的 ", 60"（分钟）
+            int intervalToken = -1;
+            for (int i = 0; i < tokens.size(); i++) {
+                if (isInterval(tokens, i)) {
+                    intervalToken = i;
+                    break;
+                }
+            }
+            if (intervalToken < 0 && tokens.isPunct(symbol + 1, ',')
+                    && symbol + 2 < tokens.size() && tokens.kind(symbol + 2) == AlertTokenizer.NUMBER
+                    && tokens.indexOf(symbol + 2, '.') < 0 && tokens.segment(symbol + 2) == tokens.segment(symbol)) {
+                intervalToken = symbol + 2;
+            }
+            if (intervalToken >= 0) {
+                out.interval(tokens.text(intervalToken));
+            }
+
+            // 价格优先取条件后面的数字，否则取品种后面的
+            int condition = findCondition(tokens, 0, out);
+            int price = findPrice(tokens, condition >= 0 ? condition + 1 : symbol + 1);
+            if (price == intervalToken && price >= 0) {
+                price = findPrice(tokens, price + 1);
+            }
+            if (price >= 0) {
+                out.price(tokens.number(price));
+            }
+            return true;
+        }
+    };
+}
@@ -0,0 +1,277 @@
+package com.tradingview.alertapp;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 所有警报来源（通知监听、轮询、推送、测试广播）共用的接收管线。
+ *
+ * 生产者只做一次无锁入队，不会在 binder 线程或轮询线程上做任何额外工作；
+ * 唯一的分发线程负责规范化、去重、解析出结构化字段，然后交给 Sink（AlertManager）。
+ * 每个来源分别统计接收、重复和送达的数量。
+ *
+ * 去重分两步：先按规范化后的原文，再按解析出的内容指纹。同一次触发会从 TradingView 应用、
+ * 邮件应用、轮询几条路径送达，文字各不相同，只有指纹能认出来；
+ * 谁先到、其余的晚了多久记在 {@link DeliveryRaceStats}。
+ */
+public class AlertPipeline {
+    private static final long DEDUPE_WINDOW = 60000; // 与通知冷却时间一致
+    private static final int DEDUPE_CAPACITY = 1024;
+    // 邮件通常晚 10~30 秒；要短于 1 分钟 K 线的间隔，下一根 K 线的触发不能被当成副本
+    private static final long FINGERPRINT_WINDOW = 45000;
+    private static final int FINGERPRINT_CAPACITY = 1024;
+
+    public enum Source {
+        LISTENER, POLLER, STREAM, TEST
+    }
+
+    public interface Sink {
+        /**
+         * origin 是来源内部的出处（通知的包名），没有时为 null；trace 已记录到 DEDUPED；
+         * payload 是解析出的字段，认不出来时为 {@link AlertPayload#EMPTY}
+         */
+        void onAlert(Source source, String origin, String title, String message, AlertPayload payload,
+                     AlertTrace trace);
+
+        /**
+         * 分发线程上出了错（解析失败、onAlert 抛出异常），分发线程会继续运行。
+         * 在分发线程上调用，要快；应用写进日志，压测工具打到 stderr
+         */
+        void onError(String message, RuntimeException e);
+    }
+
+    private static class Entry {
+        final Source source;
+        final AlertTrace trace;
+        final String origin;
+        final String title;
+        final String message;
+
+        Entry(AlertTrace trace, String origin, String title, String message) {
+            this.source = trace.source;
+            this.trace = trace;
+            this.origin = origin;
+            this.title = title;
+            this.message = message;
+        }
+    }
+
+    private final Sink sink;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final ExpiringDedupeCache dedupe = new ExpiringDedupeCache(DEDUPE_WINDOW, DEDUPE_CAPACITY);
+    // 只在分发线程上使用
+    private final AlertPayloadParser parser = new AlertPayloadParser();
+    private final FingerprintWindow fingerprints = new FingerprintWindow(FINGERPRINT_WINDOW, FINGERPRINT_CAPACITY);
+    private final DeliveryRaceStats race = DeliveryRaceStats.get();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private volatile boolean dispatcherWaiting;
+
+    private final AtomicLongArray ingested = new AtomicLongArray(Source.values().length);
+    private final AtomicLongArray duplicates = new AtomicLongArray(Source.values().length);
+    // duplicates 里内容相同、文字不同（从别的路径晚到）的部分
+    private final AtomicLongArray crossDuplicates = new AtomicLongArray(Source.values().length);
+    private final AtomicLongArray delivered = new AtomicLongArray(Source.values().length);
+
+    public AlertPipeline(Sink sink) {
+        this.sink = sink;
+        this.dispatcher = new Thread(this::dispatchLoop, "AlertPipeline");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 提交一条警报，可以从任意线程调用，不会阻塞。
+     */
+    public void submit(Source source, String title, String message) {
+        submit(source, null, title, message);
+    }
+
+    /** 同上，origin 记录警报的具体出处（比如发出通知的应用包名） */
+    public void submit(Source source, String origin, String title, String message) {
+        AlertTrace trace = AlertTrace.received(source, 0);
+        trace.mark(AlertTrace.Stage.CLASSIFIED);
+        submit(trace, origin, title, message);
+    }
+
+    /** 同上，带着来源已经记录的阶段时间戳 */
+    public void submit(AlertTrace trace, String origin, String title, String message) {
+        ingested.incrementAndGet(trace.source.ordinal());
+        queue.offer(new Entry(trace, origin, title, message));
+        // 分发线程正在等待时才需要唤醒，繁忙时省掉 unpark
+        if (dispatcherWaiting) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                dispatcherWaiting = true;
+                // 先声明等待再检查一次，避免错过在两者之间入队的警报
+                if (queue.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                dispatcherWaiting = false;
+                continue;
+            }
+            dispatch(entry);
+        }
+    }
+
+    private void dispatch(Entry entry) {
+        String title = normalize(entry.title);
+        String message = normalize(entry.message);
+        int source = entry.source.ordinal();
+
+        if (!dedupe.markIfAbsent(title + '\n' + message)) {
+            duplicates.incrementAndGet(source);
+            return;
+        }
+
+        AlertPayload payload;
+        long parseStart = System.nanoTime();
+        try {
+            payload = parser.parse(title, message);
+        } catch (RuntimeException e) {
+            // 解析失败不能影响报警
+            reportError("Error parsing alert: " + title, e);
+            payload = AlertPayload.EMPTY;
+        }
+        PowerStats.get().work(PowerStats.Work.PARSE, System.nanoTime() - parseStart);
+        if (isLateCopy(entry, payload)) {
+            duplicates.incrementAndGet(source);
+            crossDuplicates.incrementAndGet(source);
+            return;
+        }
+
+        delivered.incrementAndGet(source);
+        entry.trace.mark(AlertTrace.Stage.DEDUPED);
+        try {
+            sink.onAlert(entry.source, entry.origin, title, message, payload, entry.trace);
+        } catch (RuntimeException e) {
+            // 一条警报出错不能让分发线程退出
+            reportError("Error handling alert from " + entry.source + ": " + title, e);
+        }
+    }
+
+    private void reportError(String message, RuntimeException e) {
+        try {
+            sink.onError(message, e);
+        } catch (RuntimeException ignored) {
+            // 报错本身出错也不能让分发线程退出
+        }
+    }
+
+    /**
+     * 同一次触发已经从另一条路径到过：记下落后多久，这一份不再报警。
+     * 同一条路径窗口内再次送达同样的内容是新的触发（比如每根 K 线触发一次），照常报警；
+     * 价格或周期不同的也是不同的触发（同一个品种的几个价位、几个周期）。
+     * 没解析出品种的警报没有指纹，只靠原文去重。
+     */
+    private boolean isLateCopy(Entry entry, AlertPayload payload) {
+        long fingerprint = payload.fingerprint();
+        if (fingerprint == 0) {
+            return false;
+        }
+        long arrivedAt = entry.trace.receivedNanos();
+        int path = race.path(entry.source, entry.origin);
+        int interval = payload.intervalSeconds();
+        int slot = fingerprints.find(fingerprint, path, payload.price, interval, arrivedAt);
+        if (slot >= 0) {
+            race.recordLate(path, fingerprints.path(slot), (arrivedAt - fingerprints.arrivedAt(slot)) / 1000);
+            return true;
+        }
+        fingerprints.put(fingerprint, path, payload.price, interval, arrivedAt);
+        race.recordFirst(path);
+        return false;
+    }
+
+    /** 去掉首尾空白，连续空白合并成一个空格（不同来源的换行、缩进不一致） */
+    static String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        int len = s.length();
+        StringBuilder sb = null;
+        boolean pendingSpace = false;
+        int start = 0;
+        while (start < len && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        for (int i = start; i < len; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (sb == null) {
+                    // 只有单个普通空格时不需要复制
+                    if (c == ' ' && i + 1 < len && !Character.isWhitespace(s.charAt(i + 1))) {
+                        continue;
+                    }
+                    sb = new StringBuilder(len).append(s, start, i);
+                }
+                pendingSpace = true;
+            } else {
+                if (sb != null) {
+                    if (pendingSpace) {
+                        sb.append(' ');
+                    }
+                    sb.append(c);
+                }
+                pendingSpace = false;
+            }
+        }
+        if (sb != null) {
+            return sb.toString();
+        }
+        return start == 0 ? s : s.substring(start);
+    }
+
+    public long getIngestedCount(Source source) {
+        return ingested.get(source.ordinal());
+    }
+
+    public long getDuplicateCount(Source source) {
+        return duplicates.get(source.ordinal());
+    }
+
+    public long getDeliveredCount(Source source) {
+        return delivered.get(source.ordinal());
+    }
+
+    /** getDuplicateCount 里按内容指纹认出、从别的路径晚到的部分 */
+    public long getCrossSourceDuplicateCount(Source source) {
+        return crossDuplicates.get(source.ordinal());
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("AlertPipeline{");
+        for (Source source : Source.values()) {
+            int i = source.ordinal();
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(source).append('=').append(ingested.get(i))
+                .append('/').append(duplicates.get(i))
+                .append('/').append(delivered.get(i));
+        }
+        long cross = 0;
+        for (int i = 0; i < crossDuplicates.length(); i++) {
+            cross += crossDuplicates.get(i);
+        }
+        return sb.append("} (ingested/duplicate/delivered), cross-source duplicate=").append(cross)
+            .append(", parsed=").append(parser.getParsedCount())
+            .append(", unparsed=").append(parser.getUnrecognizedCount()).toString();
+    }
+}
@@ -0,0 +1,446 @@
+package com.tradingview.alertapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次增量轮询：按 {@link PollCursor} 组装请求，304 直接返回，200 边读边解析。
+ *
+ * AlertPollingService 和 JVM 上的轮询压测用的是同一份代码，只是端点和回调不同。
+ * 端点在构造时给定，可以指向真实服务器，也可以指向本地的替身服务器。
+ * 同一个实例只能在一个线程上调用 poll（PollScheduler 保证了这一点）。
+ * 请求经由 {@link PollTransport}：连接在轮询之间复用，响应体 gzip 压缩；
+ * 每次请求（包括 304 和失败）记一次唤醒和线上读到的响应体字节数到 {@link PowerStats}。
+ *
+ * 可以给多个端点（同一份警报的几台服务器，id、since 和 ETag 一致）。每次轮询：
+ * - 按健康状况（{@link PollEndpoint}）挑最快的健康端点作为主端点
+ * - 主端点超过它最近响应时间的 p95 还没回应，把同一个请求对冲给下一个端点，谁先完整读完用谁的
+ * - 主端点失败时立即转给下一个端点；宕机的端点冷却结束后捎带一次探测，恢复后重新参与
+ * - 有了结果就中止输掉的请求（断开连接），端点不会一直占着等到读超时
+ * - 每 {@link #EXPLORE_EVERY} 次轮询让最久没有样本的健康端点当一次主端点，
+ *   偶然一次慢的端点不会一直排在后面没机会恢复
+ * 几个端点同时送达的警报按 id 去重，只交给 handler 一次；一次轮询有了结果之后，
+ * 输掉的请求读到的警报直接丢弃（下一次轮询的 since 已经覆盖）。
+ * 单个端点时和以前一样，在调用线程上完成，不另开线程。
+ */
+public class AlertPoller {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 5000;
+    // 局域网上 p95 只有几毫秒，太早对冲只是把每个请求发两遍
+    private static final long MIN_HEDGE_MS = 20;
+    static final int EXPLORE_EVERY = 32;
+
+    private final PollEndpoint[] endpoints;
+    private final PollCursor cursor;
+    // 多个端点时各个请求在这里执行；每个端点同时最多一个请求，线程数不超过端点数
+    private final ExecutorService attempts;
+
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong failedOver = new AtomicLong();
+    private final AtomicLong rescued = new AtomicLong();
+    private final AtomicLong explored = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public AlertPoller(String serverUrl, PollCursor cursor) {
+        this(serverUrl, cursor, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    public AlertPoller(String serverUrl, PollCursor cursor, int connectTimeout, int readTimeout) {
+        this(Collections.singletonList(serverUrl), cursor, connectTimeout, readTimeout);
+    }
+
+    /** @param serverUrls 按优先顺序，健康状况相同时排在前面的先用 */
+    public AlertPoller(List<String> serverUrls, PollCursor cursor, int connectTimeout, int readTimeout) {
+        this(serverUrls, cursor, connectTimeout, readTimeout, PollEndpoint.DEFAULT_COOLDOWN_MS);
+    }
+
+    /** @param cooldownMs 端点宕机后第一次冷却的时间，之后每次翻倍 */
+    public AlertPoller(List<String> serverUrls, PollCursor cursor, int connectTimeout, int readTimeout,
+                       long cooldownMs) {
+        if (serverUrls.isEmpty()) {
+            throw new IllegalArgumentException("No poll endpoint");
+        }
+        this.cursor = cursor;
+        this.endpoints = new PollEndpoint[serverUrls.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            endpoints[i] = new PollEndpoint(serverUrls.get(i), connectTimeout, readTimeout, cooldownMs);
+        }
+        if (endpoints.length > 1) {
+            final AtomicLong counter = new AtomicLong();
+            this.attempts = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "AlertPoller-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.attempts = null;
+        }
+    }
+
+    /** 逗号或空白分隔的端点列表 */
+    public static List<String> parseUrls(String urls) {
+        List<String> list = new ArrayList<>();
+        for (String url : urls.trim().split("[,\\s]+")) {
+            if (!url.isEmpty()) {
+                list.add(url);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 轮询一次，每解析完一条警报就回调 handler（同一条警报从几个端点送达时只回调一次；
+     * 和推送之间按 id 去重仍由调用方通过游标完成）。
+     *
+     * @return 本次交给 handler 的警报数量
+     * @throws IOException 所有可用的端点都失败（连接失败、超时、非 200/304 或响应被截断），
+     *                     抛出的是最后一个失败；截断前已经回调的警报不会撤回，游标的 since 已经跟上，下次不会重复
+     */
+    public int poll(AlertJsonReader.AlertHandler handler) throws IOException {
+        long n = rounds.incrementAndGet();
+        Round round = new Round(cursor.newRequest(), handler, endpoints.length > 1);
+        if (attempts == null) {
+            PollEndpoint endpoint = endpoints[0];
+            endpoint.tryAcquire(false, false);
+            round.launched++;
+            attempt(round, endpoint);
+            return round.result();
+        }
+        return pollHedged(round, n % EXPLORE_EVERY == 0);
+    }
+
+    private int pollHedged(Round round, boolean explore) throws IOException {
+        long now = nowMs();
+        List<PollEndpoint> standby = rank(now);
+        // 冷却结束的宕机端点：这次顺带探测一下，不占主端点的位置
+        for (PollEndpoint endpoint : endpoints) {
+            if (endpoint.state(now) == PollEndpoint.State.PROBE && endpoint.tryAcquire(false, true)) {
+                standby.remove(endpoint);
+                launch(round, endpoint);
+            }
+        }
+        // 对冲延迟按排第一的端点算，探索的端点样本少，默认的延迟太长
+        PollEndpoint pace = standby.isEmpty() ? null : standby.get(0);
+        if (explore && explore(standby, now)) {
+            explored.incrementAndGet();
+        }
+        PollEndpoint current = launchNext(round, standby, false);
+        if (current == null && round.launched == 0) {
+            throw new IOException("All poll endpoints busy");
+        }
+        round.primary = current;
+        long hedgeAt = current != null ? now + Math.min(hedgeDelay(current), hedgeDelay(pace)) : Long.MAX_VALUE;
+
+        while (true) {
+            boolean allFailed;
+            synchronized (round) {
+                // 探测不算在内：主端点和对冲的请求都失败了就立即转移，不等探测的结果
+                while (!round.done && round.racingFailed < round.racing.size()) {
+                    long wait = hedgeAt - nowMs();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    await(round, wait);
+                }
+                if (round.done) {
+                    break;
+                }
+                allFailed = round.racingFailed == round.racing.size();
+                if (allFailed && standby.isEmpty()) {
+                    // 没有端点可以转移了，只剩探测可能成功
+                    while (!round.done && round.failed < round.launched) {
+                        await(round, 0);
+                    }
+                    break;
+                }
+            }
+            // 都失败了就转给下一个端点，否则是等过了 p95，对冲
+            current = launchNext(round, standby, !allFailed);
+            if (current == null) {
+                // standby 里剩下的都在忙，等已经发出的请求有结果
+                hedgeAt = Long.MAX_VALUE;
+                continue;
+            }
+            (allFailed ? failedOver : hedged).incrementAndGet();
+            hedgeAt = nowMs() + hedgeDelay(current);
+        }
+        int count = round.result();
+        if (round.winner != round.primary) {
+            rescued.incrementAndGet();
+        }
+        return count;
+    }
+
+    /** 持有 round 的锁时调用；millis 为 0 时一直等 */
+    private static void await(Round round, long millis) throws InterruptedIOException {
+        try {
+            round.wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Poll interrupted");
+        }
+    }
+
+    /** 健康的在前（同样健康的按最近的响应时间），宕机的排最后（按冷却结束时间），只作为最后的手段 */
+    private List<PollEndpoint> rank(long now) {
+        // 先取快照再排序，排序过程中别的线程可能更新健康记录
+        int n = endpoints.length;
+        PollEndpoint[] sorted = endpoints.clone();
+        PollEndpoint.State[] states = new PollEndpoint.State[n];
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            states[i] = sorted[i].state(now);
+            keys[i] = states[i] == PollEndpoint.State.DOWN ? sorted[i].getRetryAt() : sorted[i].typicalMicros();
+        }
+        // 端点只有几个，插入排序；相同的保持配置顺序
+        for (int i = 1; i < n; i++) {
+            for (int j = i; j > 0 && (states[j].compareTo(states[j - 1]) < 0
+                || states[j] == states[j - 1] && keys[j] < keys[j - 1]); j--) {
+                PollEndpoint e = sorted[j];
+                sorted[j] = sorted[j - 1];
+                sorted[j - 1] = e;
+                PollEndpoint.State st = states[j];
+                states[j] = states[j - 1];
+                states[j - 1] = st;
+                long k = keys[j];
+                keys[j] = keys[j - 1];
+                keys[j - 1] = k;
+            }
+        }
+        return new ArrayList<>(Arrays.asList(sorted));
+    }
+
+    /** 把最久没有样本的健康端点挪到最前面，返回是否换了主端点 */
+    private static boolean explore(List<PollEndpoint> standby, long now) {
+        int oldest = -1;
+        long oldestAt = Long.MAX_VALUE;
+        for (int i = 0; i < standby.size(); i++) {
+            PollEndpoint endpoint = standby.get(i);
+            PollEndpoint.State state = endpoint.state(now);
+            if (state != PollEndpoint.State.HEALTHY && state != PollEndpoint.State.SUSPECT) {
+                continue;
+            }
+            long at = endpoint.getLastSampleAt();
+            if (oldest < 0 || at - oldestAt < 0) {
+                oldest = i;
+                oldestAt = at;
+            }
+        }
+        if (oldest <= 0) {
+            return false;
+        }
+        standby.add(0, standby.remove(oldest));
+        return true;
+    }
+
+    /** 发给 standby 里第一个空闲的端点，都在忙时返回 null */
+    private PollEndpoint launchNext(Round round, List<PollEndpoint> standby, boolean hedge) {
+        while (!standby.isEmpty()) {
+            PollEndpoint endpoint = standby.remove(0);
+            if (endpoint.tryAcquire(hedge, false)) {
+                synchronized (round) {
+                    round.racing.add(endpoint);
+                }
+                launch(round, endpoint);
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private void launch(final Round round, final PollEndpoint endpoint) {
+        synchronized (round) {
+            round.launched++;
+        }
+        attempts.execute(() -> attempt(round, endpoint));
+    }
+
+    private static long hedgeDelay(PollEndpoint endpoint) {
+        return Math.max(MIN_HEDGE_MS, endpoint.hedgeDelayMs());
+    }
+
+    private static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /** 在端点上执行一次请求，结果记到端点的健康记录和 round 上 */
+    private void attempt(Round round, PollEndpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            fetch(round, endpoint);
+            endpoint.succeeded((System.nanoTime() - start) / 1000, round.winner == endpoint);
+        } catch (IOException | RuntimeException e) {
+            if (round.wasAborted(endpoint)) {
+                endpoint.cancelled((System.nanoTime() - start) / 1000);
+            } else {
+                endpoint.failed(nowMs());
+            }
+            round.fail(endpoint, e);
+        }
+    }
+
+    private void fetch(Round round, PollEndpoint endpoint) throws IOException {
+        PollCursor.Request request = round.request;
+        PollTransport.Response response = endpoint.transport.get(endpoint.url + request.query, request.etag);
+        // 只有响应完整读完，连接才放回池里给下次轮询用
+        boolean reusable = false;
+        try {
+            if (response.code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // 没有新警报：只交换了头部，不需要解析响应体
+                reusable = true;
+                round.win(endpoint, response.getHeader("ETag"));
+                return;
+            }
+            if (response.code != HttpURLConnection.HTTP_OK) {
+                reusable = true;
+                throw new IOException("Poll failed with HTTP " + response.code);
+            }
+
+            endpoint.reader.read(response.body(), round);
+            reusable = true;
+            round.win(endpoint, response.getHeader("ETag"));
+        } finally {
+            response.release(reusable);
+        }
+    }
+
+    /** 停掉对冲用的线程；单个端点时什么也不做 */
+    public void shutdown() {
+        if (attempts != null) {
+            attempts.shutdownNow();
+        }
+    }
+
+    /** 第一个端点（推送连接用它所在的服务器） */
+    public String getServerUrl() {
+        return endpoints[0].url;
+    }
+
+    public List<PollEndpoint> getEndpoints() {
+        return Collections.unmodifiableList(Arrays.asList(endpoints));
+    }
+
+    public PollCursor getCursor() {
+        return cursor;
+    }
+
+    /** 主端点超过 p95 没有回应、同一个请求又发给下一个端点的次数 */
+    public long getHedgedCount() {
+        return hedged.get();
+    }
+
+    /** 已经发出的请求都失败、转给下一个端点的次数 */
+    public long getFailedOverCount() {
+        return failedOver.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AlertPoller{endpoints=" + endpoints.length
+            + ", polls=" + rounds.get()
+            + ", hedged=" + hedged.get()
+            + ", failedOver=" + failedOver.get()
+            + ", rescued=" + rescued.get()
+            + ", explored=" + explored.get()
+            + ", duplicates=" + duplicates.get() + "}";
+    }
+
+    /**
+     * 一次轮询：同一个请求可能发给了几个端点，第一个完整读完的赢，用它的 ETag 推进游标。
+     * 各端点的请求在各自的线程上解析，送达的警报在这里加锁、按 id 去重后交给 handler。
+     */
+    private final class Round implements AlertJsonReader.AlertHandler {
+        final PollCursor.Request request;
+        final AlertJsonReader.AlertHandler handler;
+        // 单个端点时为 null，不需要去重
+        final Set<String> seen;
+        PollEndpoint primary;
+        // 主端点、对冲和转移的请求（不含探测），有了结果就中止其余的
+        final List<PollEndpoint> racing = new ArrayList<>(2);
+        List<PollEndpoint> aborted = Collections.emptyList();
+        int launched;
+        int failed;
+        // failed 里 racing 的部分
+        int racingFailed;
+        int delivered;
+        boolean done;
+        volatile PollEndpoint winner;
+        Exception error;
+
+        Round(PollCursor.Request request, AlertJsonReader.AlertHandler handler, boolean dedupe) {
+            this.request = request;
+            this.handler = handler;
+            this.seen = dedupe ? new HashSet<String>() : null;
+        }
+
+        @Override
+        public synchronized void onAlert(String id, String subject, String from, long time) {
+            if (done) {
+                // 已经有端点赢了，输掉的请求读到的不再交出去
+                return;
+            }
+            if (seen != null && id != null && !seen.add(id)) {
+                duplicates.incrementAndGet();
+                return;
+            }
+            delivered++;
+            handler.onAlert(id, subject, from, time);
+        }
+
+        /** 第一个成功的请求推进游标（在通知 poll 返回之前，下一次轮询才能带上新的 ack 和 ETag） */
+        void win(PollEndpoint endpoint, String etag) {
+            List<PollEndpoint> losers;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                cursor.complete(request, etag);
+                winner = endpoint;
+                done = true;
+                losers = new ArrayList<>(racing);
+                losers.remove(endpoint);
+                aborted = losers;
+                notifyAll();
+            }
+            // 断开连接不用持锁，输掉的请求可能正阻塞在 onAlert 上等锁
+            for (PollEndpoint loser : losers) {
+                loser.transport.abort();
+            }
+        }
+
+        synchronized boolean wasAborted(PollEndpoint endpoint) {
+            return aborted.contains(endpoint);
+        }
+
+        synchronized void fail(PollEndpoint endpoint, Exception e) {
+            failed++;
+            if (racing.contains(endpoint)) {
+                racingFailed++;
+            }
+            error = e;
+            notifyAll();
+        }
+
+        synchronized int result() throws IOException {
+            if (done) {
+                return delivered;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throw (IOException) error;
+        }
+    }
+}
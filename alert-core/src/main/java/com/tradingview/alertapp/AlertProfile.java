@@ -0,0 +1,81 @@
+package com.tradingview.alertapp;
+
+/**
+ * 报警输出配置：振动波形、是否响铃、每轮时长和重复计划。
+ *
+ * 所有配置在启动时一次性构建（包括振动波形数组），报警时只是取出现成的对象。
+ * 构造后不可变。
+ */
+public final class AlertProfile {
+    public static final String CRITICAL = "critical";
+    public static final String NORMAL = "normal";
+    public static final String INFO = "info";
+
+    public final String name;
+    /** 数字越大越重要 */
+    public final int severity;
+    public final boolean sound;
+    /** 振动波形（同 Vibrator.vibrate 的 timings），null 表示不振动 */
+    public final long[] vibrationPattern;
+    /** 每一轮响铃/振动的时长 */
+    public final long alertDurationMs;
+    /** 两轮之间的间隔（从上一轮开始算） */
+    public final long repeatIntervalMs;
+    public final int maxRepeats;
+    /** 常驻通知（带停止按钮，直到手动停止或重复结束） */
+    public final boolean persistent;
+
+    public AlertProfile(String name, int severity, boolean sound, long[] vibrationPattern,
+                        long alertDurationMs, long repeatIntervalMs, int maxRepeats, boolean persistent) {
+        if (maxRepeats < 1) {
+            throw new IllegalArgumentException("maxRepeats must be >= 1");
+        }
+        this.name = name;
+        this.severity = severity;
+        this.sound = sound;
+        this.vibrationPattern = vibrationPattern;
+        this.alertDurationMs = alertDurationMs;
+        this.repeatIntervalMs = repeatIntervalMs;
+        this.maxRepeats = maxRepeats;
+        this.persistent = persistent;
+    }
+
+    public boolean hasOutput() {
+        return sound || vibrationPattern != null;
+    }
+
+    /**
+     * 覆盖 durationMs 的振动波形：振 onMs，停 offMs，循环到时长用完。
+     * 不使用重复模式，播放完整个波形后自然结束。
+     */
+    public static long[] pulsePattern(long durationMs, long onMs, long offMs) {
+        int cycles = (int) Math.max(1, durationMs / (onMs + offMs));
+        long[] pattern = new long[1 + cycles * 2];
+        pattern[0] = 0; // 初始延迟
+        for (int i = 1; i < pattern.length; i += 2) {
+            pattern[i] = onMs;
+            pattern[i + 1] = offMs;
+        }
+        return pattern;
+    }
+
+    /** 内置的三档配置 */
+    public static AlertProfile[] defaults() {
+        return new AlertProfile[] {
+            // 原有行为：3分钟声音+振动（振1秒停0.5秒），10分钟重复，最多6次
+            new AlertProfile(CRITICAL, 3, true, pulsePattern(180000, 1000, 500),
+                180000, 600000, 6, true),
+            // 1分钟声音+振动，10分钟后再提醒一次
+            new AlertProfile(NORMAL, 2, true, pulsePattern(60000, 1000, 500),
+                60000, 600000, 2, true),
+            // 只短振两下并显示通知，不响铃、不重复
+            new AlertProfile(INFO, 1, false, new long[] {0, 300, 200, 300},
+                1000, 0, 1, false),
+        };
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,102 @@
+package com.tradingview.alertapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按来源或内容把警报分配到输出配置。
+ *
+ * 规则格式（按顺序匹配，第一条命中的生效）：
+ *   source:POLLER=normal     来源为 POLLER 的警报
+ *   keyword:[info]=info      标题或内容包含 "[info]"（忽略大小写）
+ * 都不命中时使用默认配置。规则和配置在构造时解析完毕，之后只读、线程安全。
+ */
+public class AlertProfileRouter {
+
+    private static class Rule {
+        final AlertPipeline.Source source;
+        final String keyword;
+        final AlertProfile profile;
+
+        Rule(AlertPipeline.Source source, String keyword, AlertProfile profile) {
+            this.source = source;
+            this.keyword = keyword;
+            this.profile = profile;
+        }
+    }
+
+    private final Map<String, AlertProfile> profiles = new HashMap<>();
+    private final List<Rule> rules = new ArrayList<>();
+    private final AlertProfile defaultProfile;
+
+    public AlertProfileRouter(AlertProfile[] profiles, String[] ruleSpecs, String defaultProfile) {
+        for (AlertProfile profile : profiles) {
+            this.profiles.put(profile.name, profile);
+        }
+        this.defaultProfile = require(defaultProfile);
+
+        for (String spec : ruleSpecs) {
+            int colon = spec.indexOf(':');
+            int eq = spec.lastIndexOf('=');
+            if (colon <= 0 || eq <= colon) {
+                throw new IllegalArgumentException("Invalid profile rule: " + spec);
+            }
+            String kind = spec.substring(0, colon).trim();
+            String value = spec.substring(colon + 1, eq).trim();
+            AlertProfile profile = require(spec.substring(eq + 1).trim());
+
+            if ("source".equals(kind)) {
+                rules.add(new Rule(AlertPipeline.Source.valueOf(value), null, profile));
+            } else if ("keyword".equals(kind)) {
+                rules.add(new Rule(null, value, profile));
+            } else {
+                throw new IllegalArgumentException("Unknown profile rule kind: " + spec);
+            }
+        }
+    }
+
+    private AlertProfile require(String name) {
+        AlertProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown alert profile: " + name);
+        }
+        return profile;
+    }
+
+    public AlertProfile route(AlertPipeline.Source source, String title, String message) {
+        for (Rule rule : rules) {
+            if (rule.source != null) {
+                if (rule.source == source) {
+                    return rule.profile;
+                }
+            } else if (containsIgnoreCase(title, rule.keyword) || containsIgnoreCase(message, rule.keyword)) {
+                return rule.profile;
+            }
+        }
+        return defaultProfile;
+    }
+
+    public AlertProfile get(String name) {
+        return profiles.get(name);
+    }
+
+    public AlertProfile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public AlertProfile[] getProfiles() {
+        return profiles.values().toArray(new AlertProfile[0]);
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,267 @@
+package com.tradingview.alertapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 key 限流的令牌桶，防止一个指标在同一个品种上反复触发把警报输出占满。
+ *
+ * 两层桶，警报要两层都有令牌才放行：
+ * - 品种层：每个 "品种 + 策略" 一个桶，容量 keyBurst，每 keyRefillMs 补一个令牌
+ * - 来源层：每个来源（通知的包名，轮询时为来源名）一个桶，参数更宽，
+ *   挡住不断换品种、绕过品种层的失控来源
+ * 没解析出品种的警报只走来源层。
+ *
+ * 每个桶只存一个 long：桶重新装满的时刻（GCRA 写法，和令牌桶等价）。
+ * 放行条件是 now >= full - (burst - 1) * refill，放行后 full = max(full, now) + refill；
+ * full <= now 的桶是满的，和从没见过的 key 没有区别，表满时可以直接丢掉。
+ *
+ * key 是 64 位哈希，存在开放寻址的 long 数组里，容量固定，不随 key 的数量增长：
+ * 表满时先清掉已满且没有被压警报的桶，还不够再淘汰最久没动过的桶。
+ * 被淘汰的 key 最多重新得到一次突发额度，仍然受来源层限制。
+ *
+ * 被限流的警报计在它的桶上，下一条从同一个品种或来源放行的警报带上这个数，
+ * 通知里就能看到期间压掉了多少条。
+ */
+public class AlertRateLimiter {
+    /** tryAcquire 的返回值：被限流 */
+    public static final int THROTTLED = -1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Buckets keys;
+    private final Buckets sources;
+
+    private long admitted;
+    private long throttledByKey;
+    private long throttledBySource;
+
+    /**
+     * @param keyBurst 每个品种最多连续放行的条数
+     * @param keyRefillMs 品种层每补一个令牌的间隔
+     * @param sourceBurst 每个来源最多连续放行的条数
+     * @param sourceRefillMs 来源层每补一个令牌的间隔
+     * @param maxKeys 品种层最多记住的 key 数，来源层固定为它的 1/16（至少 64）
+     */
+    public AlertRateLimiter(int keyBurst, long keyRefillMs, int sourceBurst, long sourceRefillMs, int maxKeys) {
+        if (keyBurst <= 0 || sourceBurst <= 0 || keyRefillMs <= 0 || sourceRefillMs <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("burst, refill and maxKeys must be positive");
+        }
+        this.keys = new Buckets(keyBurst, keyRefillMs, maxKeys);
+        this.sources = new Buckets(sourceBurst, sourceRefillMs, Math.max(64, maxKeys / 16));
+    }
+
+    /** 品种层的 key：品种和策略，没有品种时为 0（只走来源层） */
+    public static long key(AlertPayload payload) {
+        if (payload.symbol == null) {
+            return 0;
+        }
+        return finish(hash(hash(FNV_OFFSET, payload.symbol), payload.strategy));
+    }
+
+    /** 来源层的 key：通知的包名，没有包名时用来源名 */
+    public static long sourceKey(AlertPipeline.Source source, String origin) {
+        return finish(hash(hash(FNV_OFFSET, source.name()), origin));
+    }
+
+    private static long hash(long h, String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                h = (h ^ s.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // 分隔符，避免 "AB"+"C" 和 "A"+"BC" 相同
+        return (h ^ 0xff) * FNV_PRIME;
+    }
+
+    private static long finish(long h) {
+        // 0 在表里表示空槽
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * @param key {@link #key}，0 表示只按来源限流
+     * @return {@link #THROTTLED}；或放行，返回这个品种和来源上次放行以来被压掉的条数
+     */
+    public int tryAcquire(long key, long sourceKey) {
+        return tryAcquire(key, sourceKey, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    synchronized int tryAcquire(long key, long sourceKey, long nowMs) {
+        int sourceSlot = sources.slot(sourceKey, nowMs);
+        // 品种层只在放行时才插入：没见过的 key 就是满桶，被挡住的洪水不会把表冲满
+        int keySlot = key != 0 ? keys.get(key) : -1;
+
+        // 先查品种层：被它挡住的警报不消耗来源层的令牌
+        if (keySlot >= 0 && !keys.available(keySlot, nowMs)) {
+            keys.suppressed[keySlot]++;
+            throttledByKey++;
+            return THROTTLED;
+        }
+        if (!sources.available(sourceSlot, nowMs)) {
+            sources.suppressed[sourceSlot]++;
+            throttledBySource++;
+            return THROTTLED;
+        }
+
+        int suppressed = sources.take(sourceSlot, nowMs);
+        if (key != 0) {
+            if (keySlot < 0) {
+                keySlot = keys.slot(key, nowMs);
+            }
+            suppressed += keys.take(keySlot, nowMs);
+        }
+        admitted++;
+        return suppressed;
+    }
+
+    public synchronized int size() {
+        return keys.size + sources.size;
+    }
+
+    public synchronized long getAdmittedCount() {
+        return admitted;
+    }
+
+    public synchronized long getThrottledCount() {
+        return throttledByKey + throttledBySource;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AlertRateLimiter{admitted=" + admitted + ", throttledByKey=" + throttledByKey
+            + ", throttledBySource=" + throttledBySource + ", keys=" + keys + ", sources=" + sources + "}";
+    }
+
+    /** 一层桶：线性探测的开放寻址表，删除用后移，不留墓碑 */
+    private static final class Buckets {
+        final long window;
+        final long refill;
+        final int maxSize;
+        final int mask;
+
+        final long[] keys;
+        // 桶重新装满的时刻
+        final long[] full;
+        // 最后一次放行或限流的时刻，淘汰用
+        final long[] touched;
+        final int[] suppressed;
+        int size;
+
+        long swept;
+        long evicted;
+
+        Buckets(int burst, long refillMs, int maxSize) {
+            this.refill = refillMs;
+            this.window = (burst - 1) * refillMs;
+            this.maxSize = maxSize;
+            // 装载率不超过 1/2，探测链很短
+            int capacity = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+            this.mask = capacity - 1;
+            this.keys = new long[capacity];
+            this.full = new long[capacity];
+            this.touched = new long[capacity];
+            this.suppressed = new int[capacity];
+        }
+
+        /** key 所在的槽，没有就插入一个满桶 */
+        int slot(long key, long nowMs) {
+            int i = find(key);
+            if (keys[i] == key) {
+                return i;
+            }
+            if (size >= maxSize) {
+                makeRoom(nowMs);
+                i = find(key);
+            }
+            keys[i] = key;
+            full[i] = nowMs;
+            touched[i] = nowMs;
+            suppressed[i] = 0;
+            size++;
+            return i;
+        }
+
+        /** key 所在的槽，没有时为 -1 */
+        int get(long key) {
+            int i = find(key);
+            return keys[i] == key ? i : -1;
+        }
+
+        /** key 所在的槽，或者它应该插入的空槽 */
+        private int find(long key) {
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private static int mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+
+        boolean available(int slot, long nowMs) {
+            touched[slot] = nowMs;
+            return nowMs >= full[slot] - window;
+        }
+
+        /** 消耗一个令牌，返回并清零这个桶上被压掉的条数 */
+        int take(int slot, long nowMs) {
+            full[slot] = Math.max(full[slot], nowMs) + refill;
+            int count = suppressed[slot];
+            suppressed[slot] = 0;
+            return count;
+        }
+
+        /** 表满了：清掉已装满、没有被压警报的桶；一个都没有就淘汰最久没动过的 */
+        private void makeRoom(long nowMs) {
+            int oldest = -1;
+            for (int i = 0; i <= mask; i++) {
+                if (keys[i] == 0) {
+                    continue;
+                }
+                if (full[i] <= nowMs && suppressed[i] == 0) {
+                    remove(i);
+                    swept++;
+                    // 后移可能把没检查过的条目挪到 i，重新检查这个位置
+                    i--;
+                } else if (oldest < 0 || touched[i] < touched[oldest]) {
+                    oldest = i;
+                }
+            }
+            if (size >= maxSize) {
+                remove(oldest);
+                evicted++;
+            }
+        }
+
+        private void remove(int slot) {
+            int hole = slot;
+            int i = (slot + 1) & mask;
+            while (keys[i] != 0) {
+                int home = mix(keys[i]) & mask;
+                // home 不在 (hole, i] 之间时，这个条目可以后移到空洞里
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    full[hole] = full[i];
+                    touched[hole] = touched[i];
+                    suppressed[hole] = suppressed[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[hole] = 0;
+            suppressed[hole] = 0;
+            size--;
+        }
+
+        @Override
+        public String toString() {
+            return "{size=" + size + ", swept=" + swept + ", evicted=" + evicted + "}";
+        }
+    }
+}
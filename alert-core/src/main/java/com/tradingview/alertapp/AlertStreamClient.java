@@ -0,0 +1,229 @@
+package com.tradingview.alertapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Server-Sent Events 客户端：与服务器保持一条长连接，服务器有警报时直接写入。
+ *
+ * 断线后自动重连（指数退避 + 抖动，服务器可用 "retry:" 覆盖），
+ * 重连时通过 Last-Event-ID 头从上次收到的事件继续。
+ * 不依赖 Android 类，可以直接对着本地的替身服务器运行。
+ */
+public class AlertStreamClient {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    // 服务器应定期发送注释行作为心跳，超过这个时间没有任何数据就认为连接已死
+    private static final int HEARTBEAT_TIMEOUT = 60000;
+    private static final long MIN_RECONNECT_DELAY = 1000;
+    private static final long MAX_RECONNECT_DELAY = 60000;
+
+    public interface Listener {
+        void onConnected();
+
+        void onEvent(String id, String event, String data);
+
+        /** cause 为 null 表示服务器正常关闭了连接 */
+        void onDisconnected(Exception cause);
+    }
+
+    private final String streamUrl;
+    private final Listener listener;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile String lastEventId;
+    private volatile HttpURLConnection activeConnection;
+    private Thread thread;
+
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+    private long serverRetry = -1;
+
+    public AlertStreamClient(String streamUrl, Listener listener) {
+        this.streamUrl = streamUrl;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "AlertStream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        HttpURLConnection conn = activeConnection;
+        if (conn != null) {
+            // 断开连接让阻塞的 read 立即返回
+            conn.disconnect();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    public void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    private void runLoop() {
+        while (running) {
+            Exception cause = null;
+            try {
+                readStream();
+            } catch (Exception e) {
+                cause = e;
+            }
+
+            boolean wasConnected = connected;
+            connected = false;
+            // stop() 主动断开时不再回调，避免服务销毁后又恢复轮询
+            if (running && (wasConnected || cause != null)) {
+                listener.onDisconnected(cause);
+            }
+
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(nextReconnectDelay());
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void readStream() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(streamUrl).openConnection();
+        activeConnection = conn;
+        try {
+            conn.setRequestMethod("GET");
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(HEARTBEAT_TIMEOUT);
+            conn.setUseCaches(false);
+            conn.setRequestProperty("Accept", "text/event-stream");
+            conn.setRequestProperty("Cache-Control", "no-cache");
+            String resumeId = lastEventId;
+            if (resumeId != null) {
+                conn.setRequestProperty("Last-Event-ID", resumeId);
+            }
+
+            int responseCode = conn.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                // 服务器不支持推送（404 等）时退避到最长间隔，期间由轮询兜底
+                if (responseCode >= 400 && responseCode < 500) {
+                    reconnectDelay = MAX_RECONNECT_DELAY;
+                }
+                throw new IOException("Stream rejected with HTTP " + responseCode);
+            }
+
+            connected = true;
+            reconnectDelay = MIN_RECONNECT_DELAY;
+            listener.onConnected();
+
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(conn.getInputStream(), UTF_8));
+            try {
+                parseEvents(reader);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            activeConnection = null;
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * 按 SSE 规范解析：字段逐行累积，空行分发一个事件。
+     */
+    private void parseEvents(BufferedReader reader) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String eventType = null;
+        String eventId = null;
+        String line;
+
+        while (running && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (eventId != null) {
+                    lastEventId = eventId;
+                }
+                if (data.length() > 0) {
+                    // 去掉最后一个 data 行追加的换行
+                    data.setLength(data.length() - 1);
+                    listener.onEvent(lastEventId, eventType, data.toString());
+                }
+                data.setLength(0);
+                eventType = null;
+                eventId = null;
+                continue;
+            }
+            if (line.charAt(0) == ':') {
+                continue; // 心跳注释
+            }
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = "";
+            if (colon >= 0) {
+                int start = colon + 1;
+                if (start < line.length() && line.charAt(start) == ' ') {
+                    start++;
+                }
+                value = line.substring(start);
+            }
+
+            switch (field) {
+                case "data":
+                    data.append(value).append('\n');
+                    break;
+                case "event":
+                    eventType = value;
+                    break;
+                case "id":
+                    eventId = value;
+                    break;
+                case "retry":
+                    try {
+                        serverRetry = Long.parseLong(value);
+                    } catch (NumberFormatException ignored) {
+                        // 按规范忽略非法的 retry
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private long nextReconnectDelay() {
+        long delay;
+        if (serverRetry >= 0 && reconnectDelay == MIN_RECONNECT_DELAY) {
+            delay = serverRetry;
+        } else {
+            delay = reconnectDelay;
+        }
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        // 抖动，避免服务器重启后所有客户端同时重连
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
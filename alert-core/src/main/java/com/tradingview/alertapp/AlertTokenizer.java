@@ -0,0 +1,225 @@
+package com.tradingview.alertapp;
+
+import java.util.Arrays;
+
+/**
+ * 警报文本的单遍切词器：只记录每个词在原文里的起止位置和类型，不复制字符串。
+ *
+ * - WORD：字母数字串，可以带 . _ ! - 和一个中间的冒号（BINANCE:BTCUSDT、CME_MINI:ES1!、15m）
+ * - NUMBER：只有数字、小数点和千分位逗号（65,000.50）
+ * - PUNCT：其他单个非空白字符（: , @ = % ( ) 等）
+ *
+ * 句末的点不算进词里（"filled on BTCUSDT." 得到 BTCUSDT）。
+ * 标题和内容依次切进同一组数组，每个词记得自己来自哪一段。
+ * 数组在多次使用之间复用，同一个实例不能被多个线程同时使用。
+ */
+public final class AlertTokenizer {
+    public static final byte WORD = 0;
+    public static final byte NUMBER = 1;
+    public static final byte PUNCT = 2;
+
+    private static final int MAX_SEGMENTS = 4;
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private final CharSequence[] segments = new CharSequence[MAX_SEGMENTS];
+    private int segmentCount;
+
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private byte[] kinds = new byte[64];
+    private byte[] owners = new byte[64];
+    private int count;
+
+    public void reset() {
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = null;
+        }
+        segmentCount = 0;
+        count = 0;
+    }
+
+    /** 追加一段文本（标题、内容……），null 当作空串 */
+    public void tokenize(CharSequence s) {
+        if (segmentCount == MAX_SEGMENTS) {
+            throw new IllegalStateException("At most " + MAX_SEGMENTS + " segments");
+        }
+        int segment = segmentCount++;
+        segments[segment] = s;
+        if (s == null) {
+            return;
+        }
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (!isWordChar(c)) {
+                add(segment, i, i + 1, PUNCT);
+                i++;
+                continue;
+            }
+
+            int start = i;
+            boolean numeric = true;
+            boolean digit = false;
+            boolean colon = false;
+            while (i < len) {
+                c = s.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    digit = true;
+                } else if (c == '.') {
+                    // 数字和词里都可以有点
+                } else if (isWordChar(c)) {
+                    numeric = false;
+                } else if (c == ',' && numeric && i + 1 < len && isDigit(s.charAt(i + 1))) {
+                    // 千分位
+                } else if ((c == ':' && !colon || c == '-') && i > start && i + 1 < len
+                        && Character.isLetterOrDigit(s.charAt(i + 1)) && !(numeric && c == '-')) {
+                    colon |= c == ':';
+                    numeric = false;
+                } else {
+                    break;
+                }
+                i++;
+            }
+            int end = i;
+            while (end - start > 1 && s.charAt(end - 1) == '.') {
+                end--;
+            }
+            add(segment, start, end, numeric && digit ? NUMBER : WORD);
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '!';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void add(int segment, int start, int end, byte kind) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        kinds[count] = kind;
+        owners[count] = (byte) segment;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte kind(int token) {
+        return kinds[token];
+    }
+
+    /** 词来自第几段（tokenize 的调用顺序，从 0 开始） */
+    public int segment(int token) {
+        return owners[token];
+    }
+
+    public int length(int token) {
+        return ends[token] - starts[token];
+    }
+
+    public char charAt(int token, int index) {
+        return segments[owners[token]].charAt(starts[token] + index);
+    }
+
+    public boolean isPunct(int token, char c) {
+        return token >= 0 && token < count && kinds[token] == PUNCT && charAt(token, 0) == c;
+    }
+
+    /** 和 word 忽略大小写相等（word 应为小写 ASCII） */
+    public boolean is(int token, String word) {
+        if (token < 0 || token >= count || length(token) != word.length()) {
+            return false;
+        }
+        CharSequence s = segments[owners[token]];
+        int start = starts[token];
+        for (int i = 0; i < word.length(); i++) {
+            char c = s.charAt(start + i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 词里第一个 c 的位置（相对词首），没有时为 -1 */
+    public int indexOf(int token, char c) {
+        CharSequence s = segments[owners[token]];
+        for (int i = starts[token]; i < ends[token]; i++) {
+            if (s.charAt(i) == c) {
+                return i - starts[token];
+            }
+        }
+        return -1;
+    }
+
+    /** 只在需要取出字段时才分配字符串 */
+    public String text(int token) {
+        return segments[owners[token]].subSequence(starts[token], ends[token]).toString();
+    }
+
+    /** 从 first 到 last（含）覆盖的原文，两个词必须在同一段 */
+    public String text(int first, int last) {
+        if (owners[first] != owners[last]) {
+            throw new IllegalArgumentException("Tokens " + first + " and " + last + " are in different segments");
+        }
+        return segments[owners[first]].subSequence(starts[first], ends[last]).toString();
+    }
+
+    /** NUMBER 的值（忽略千分位），格式不对时为 NaN；不分配对象 */
+    public double number(int token) {
+        if (kinds[token] != NUMBER) {
+            return Double.NaN;
+        }
+        CharSequence s = segments[owners[token]];
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (int i = starts[token]; i < ends[token]; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (scale >= 0) {
+                    return Double.NaN;
+                }
+                scale = 0;
+            } else if (c != ',') {
+                if (++digits > 18) {
+                    // 超出 long 精度的数字很少见，交给标准解析；后面可能还有第二个小数点
+                    try {
+                        return Double.parseDouble(text(token).replace(",", ""));
+                    } catch (NumberFormatException e) {
+                        return Double.NaN;
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        return scale > 0 ? mantissa / POW10[scale] : mantissa;
+    }
+}
@@ -0,0 +1,79 @@
+package com.tradingview.alertapp;
+
+/**
+ * 一条警报经过各阶段的时间戳，随警报一起穿过管线，最后交给 {@link LatencyStats}。
+ *
+ * 阶段之间用 System.nanoTime（单调）；发出时间来自通知的 postTime 或服务器，
+ * 是墙上时间，只和收到时的墙上时间相减。
+ * 每个阶段只由一个线程写入，线程之间经由管线队列/Handler 交接，不需要额外同步。
+ */
+public final class AlertTrace {
+
+    public enum Stage {
+        /** 来源发出（通知的 postTime），不一定有 */
+        POSTED,
+        RECEIVED,
+        CLASSIFIED,
+        DEDUPED,
+        SCHEDULED,
+        /** 开始出声（合并进正在响的突发时，就是加入的时刻） */
+        AUDIO_STARTED
+    }
+
+    private static final int STAGES = Stage.values().length;
+
+    public final AlertPipeline.Source source;
+    private final long postedAtMs;
+    private final long receivedAtMs;
+    private final long[] stageNanos = new long[STAGES];
+
+    private AlertTrace(AlertPipeline.Source source, long postedAtMs) {
+        this.source = source;
+        this.postedAtMs = postedAtMs;
+        this.receivedAtMs = System.currentTimeMillis();
+        this.stageNanos[Stage.RECEIVED.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * 在收到警报时创建。
+     *
+     * @param postedAtMs 来源发出的墙上时间，未知时传 0
+     */
+    public static AlertTrace received(AlertPipeline.Source source, long postedAtMs) {
+        return new AlertTrace(source, postedAtMs);
+    }
+
+    public void mark(Stage stage) {
+        stageNanos[stage.ordinal()] = System.nanoTime();
+    }
+
+    /** 收到的时刻（System.nanoTime），比较几条路径谁先到 */
+    public long receivedNanos() {
+        return stageNanos[Stage.RECEIVED.ordinal()];
+    }
+
+    public boolean has(Stage stage) {
+        if (stage == Stage.POSTED) {
+            return postedAtMs > 0;
+        }
+        return stageNanos[stage.ordinal()] != 0;
+    }
+
+    /**
+     * 从 from 到 to 经过的微秒数；任一阶段没有记录时为 -1。
+     * 发出到收到的时间来自两台设备（或两个进程）的墙上时钟，时钟偏差会计入，负数按 0 算。
+     */
+    public long micros(Stage from, Stage to) {
+        if (!has(from) || !has(to)) {
+            return -1;
+        }
+        long fromNanos;
+        if (from == Stage.POSTED) {
+            long postedToReceivedNanos = Math.max(0, receivedAtMs - postedAtMs) * 1000000L;
+            fromNanos = stageNanos[Stage.RECEIVED.ordinal()] - postedToReceivedNanos;
+        } else {
+            fromNanos = stageNanos[from.ordinal()];
+        }
+        return Math.max(0, (stageNanos[to.ordinal()] - fromNanos) / 1000);
+    }
+}
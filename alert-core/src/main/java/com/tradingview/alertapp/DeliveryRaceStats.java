@@ -0,0 +1,142 @@
+package com.tradingview.alertapp;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 同一条警报从几条路径（TradingView 应用通知、邮件应用通知、轮询、推送）先后到达时，
+ * 记录哪条路径先到、其余的落后多久，用来看哪条路径实际最快、哪条只是在重复报警。
+ *
+ * 路径是 "来源 + 出处"：通知按发出通知的包名区分，轮询、推送各算一条。
+ * 路径在分发线程上登记，计数和直方图可以从任意线程读。
+ */
+public class DeliveryRaceStats {
+    // 路径数有上限，之后出现的都算进最后一条 "other"
+    static final int MAX_PATHS = 16;
+    // 落后超过1小时的都按1小时计
+    private static final long MAX_MICROS = 60L * 60 * 1000 * 1000;
+
+    private static final DeliveryRaceStats INSTANCE = new DeliveryRaceStats();
+
+    private final AlertPipeline.Source[] sources = new AlertPipeline.Source[MAX_PATHS];
+    private final String[] origins = new String[MAX_PATHS];
+    private volatile int pathCount;
+
+    private final AtomicLongArray firsts = new AtomicLongArray(MAX_PATHS);
+    private final AtomicLongArray lates = new AtomicLongArray(MAX_PATHS);
+    // [晚到的路径 * MAX_PATHS + 先到的路径]
+    private final AtomicLongArray beatenBy = new AtomicLongArray(MAX_PATHS * MAX_PATHS);
+    private final LatencyHistogram[] behind = new LatencyHistogram[MAX_PATHS];
+
+    public static DeliveryRaceStats get() {
+        return INSTANCE;
+    }
+
+    DeliveryRaceStats() {
+        for (int i = 0; i < MAX_PATHS; i++) {
+            behind[i] = new LatencyHistogram(MAX_MICROS);
+        }
+    }
+
+    /** 路径编号，第一次见到时登记；每个管线的分发线程都会调用 */
+    synchronized int path(AlertPipeline.Source source, String origin) {
+        int count = pathCount;
+        for (int i = 0; i < count; i++) {
+            if (sources[i] == source && (origin == null ? origins[i] == null : origin.equals(origins[i]))) {
+                return i;
+            }
+        }
+        if (count == MAX_PATHS) {
+            return MAX_PATHS - 1;
+        }
+        sources[count] = source;
+        origins[count] = count == MAX_PATHS - 1 ? "other" : origin;
+        pathCount = count + 1;
+        return count;
+    }
+
+    void recordFirst(int path) {
+        firsts.incrementAndGet(path);
+    }
+
+    void recordLate(int path, int firstPath, long behindMicros) {
+        lates.incrementAndGet(path);
+        beatenBy.incrementAndGet(path * MAX_PATHS + firstPath);
+        behind[path].record(behindMicros);
+    }
+
+    public void reset() {
+        for (int i = 0; i < MAX_PATHS; i++) {
+            firsts.set(i, 0);
+            lates.set(i, 0);
+            behind[i].reset();
+            for (int j = 0; j < MAX_PATHS; j++) {
+                beatenBy.set(i * MAX_PATHS + j, 0);
+            }
+        }
+    }
+
+    private String label(int path) {
+        return origins[path] == null ? sources[path].name() : sources[path] + "/" + origins[path];
+    }
+
+    /** 每条有重复到达的路径一行：先到的次数，落后时落后多少，给界面显示 */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        int count = pathCount;
+        for (int i = 0; i < count; i++) {
+            long first = firsts.get(i);
+            long late = lates.get(i);
+            if (late == 0 && beatenAny(i, count) == 0) {
+                continue;
+            }
+            LatencyHistogram h = behind[i];
+            sb.append(String.format(Locale.US, "%s first %d/%d", label(i), first, first + late));
+            if (late > 0) {
+                sb.append(String.format(Locale.US, "  behind p50 %s  p99 %s",
+                    LatencyStats.formatMicros(h.getValueAtPercentile(50)),
+                    LatencyStats.formatMicros(h.getValueAtPercentile(99))));
+            }
+            sb.append('\n');
+        }
+        return sb.length() == 0 ? "No duplicate deliveries yet" : sb.toString().trim();
+    }
+
+    /** 这条路径先到、别的路径随后也送达的次数 */
+    private long beatenAny(int path, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += beatenBy.get(i * MAX_PATHS + path);
+        }
+        return total;
+    }
+
+    /** 每条路径的先到/晚到次数和落后时间（CSV，单位微秒），以及谁被谁抢先了多少次 */
+    public String exportCsv() {
+        StringBuilder sb = new StringBuilder("path,first,late,behind_mean_us,behind_p50_us,behind_p90_us,"
+            + "behind_p99_us,behind_max_us,beaten_by\n");
+        int count = pathCount;
+        for (int i = 0; i < count; i++) {
+            LatencyHistogram h = behind[i];
+            sb.append(label(i))
+                .append(',').append(firsts.get(i))
+                .append(',').append(lates.get(i))
+                .append(',').append(h.getMean())
+                .append(',').append(h.getValueAtPercentile(50))
+                .append(',').append(h.getValueAtPercentile(90))
+                .append(',').append(h.getValueAtPercentile(99))
+                .append(',').append(h.getMax())
+                .append(',');
+            boolean any = false;
+            for (int j = 0; j < count; j++) {
+                long n = beatenBy.get(i * MAX_PATHS + j);
+                if (n > 0) {
+                    sb.append(any ? ";" : "").append(label(j)).append(':').append(n);
+                    any = true;
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
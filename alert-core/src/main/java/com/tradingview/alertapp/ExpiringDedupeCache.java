@@ -0,0 +1,103 @@
+package com.tradingview.alertapp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程安全、有上限的去重缓存：一个 key 在 TTL 内只放行一次。
+ *
+ * 所有条目的 TTL 相同，所以插入顺序就是过期顺序：每次操作顺带从链表头部
+ * 弹出已过期的条目，均摊 O(1)，不需要任何定时线程。
+ * 命中不会延长 TTL（冷却期从第一次出现算起），因此最近插入即最近使用，
+ * 超过容量时淘汰链表头部就是 LRU 淘汰。
+ */
+public class ExpiringDedupeCache {
+    private final long ttlMs;
+    private final int maxSize;
+
+    // key -> 过期时间（单调时钟，毫秒）
+    private final LinkedHashMap<String, Long> entries;
+
+    private long hits;
+    private long misses;
+    private long expired;
+    private long evicted;
+
+    public ExpiringDedupeCache(long ttlMs, int maxSize) {
+        if (ttlMs <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("ttlMs and maxSize must be positive");
+        }
+        this.ttlMs = ttlMs;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 64) * 2);
+    }
+
+    /**
+     * @return true 表示 key 在 TTL 内第一次出现（已记录）；false 表示重复
+     */
+    public boolean markIfAbsent(String key) {
+        return markIfAbsent(key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    synchronized boolean markIfAbsent(String key, long nowMs) {
+        purgeExpired(nowMs);
+
+        if (entries.containsKey(key)) {
+            hits++;
+            return false;
+        }
+
+        misses++;
+        entries.put(key, nowMs + ttlMs);
+        if (entries.size() > maxSize) {
+            Iterator<String> it = entries.keySet().iterator();
+            it.next();
+            it.remove();
+            evicted++;
+        }
+        return true;
+    }
+
+    private void purgeExpired(long nowMs) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() > nowMs) {
+                return;
+            }
+            it.remove();
+            expired++;
+        }
+    }
+
+    public synchronized int size() {
+        purgeExpired(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getExpiredCount() {
+        return expired;
+    }
+
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ExpiringDedupeCache{size=" + entries.size()
+            + ", hits=" + hits
+            + ", misses=" + misses
+            + ", expired=" + expired
+            + ", evicted=" + evicted + "}";
+    }
+}
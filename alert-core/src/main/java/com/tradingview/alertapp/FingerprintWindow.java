@@ -0,0 +1,178 @@
+package com.tradingview.alertapp;
+
+/**
+ * 跨来源去重用的指纹集合：记住最近 window 内每次触发（{@link AlertPayload#fingerprint} 加上价格和周期）
+ * 第一次从哪条路径、在什么时刻到达。
+ *
+ * 用滑动窗口而不是固定的时间分桶：同一次触发的几份副本落在桶边界两侧时也能认出来。
+ * 窗口只需要盖住路径之间的延迟，不能长过同一个警报相邻两次触发的间隔（比如 1 分钟 K 线），
+ * 否则下一次触发只从备用路径送达时会被当成上一次的副本。
+ * 价格和周期不参与指纹（有的路径没有），但两份都带着而且不同时是不同的触发：
+ * 同一个指纹可以有几个条目，放在同一条探测链上。
+ *
+ * 指纹、路径、时间、价格和周期分别存在定长的基本类型数组里（线性探测，容量固定），不装箱、不随警报数增长；
+ * 过期的条目查找时当作不存在，表满时一次性清掉，还不够再淘汰最早的。
+ *
+ * 只在管线分发线程上使用，不是线程安全的。
+ */
+public class FingerprintWindow {
+    private final long windowNanos;
+    private final int maxSize;
+    private final int mask;
+
+    private final long[] fingerprints;
+    private final long[] arrivedAt;
+    private final byte[] paths;
+    // NaN 表示没有价格，0 表示没有周期
+    private final double[] prices;
+    private final int[] intervals;
+    private int size;
+
+    private long expired;
+    private long evicted;
+
+    /**
+     * @param windowMs 同一次触发的几份副本最多相隔多久
+     * @param maxSize  最多记住的指纹数
+     */
+    public FingerprintWindow(long windowMs, int maxSize) {
+        if (windowMs <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("windowMs and maxSize must be positive");
+        }
+        this.windowNanos = windowMs * 1000000L;
+        this.maxSize = maxSize;
+        int capacity = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+        this.mask = capacity - 1;
+        this.fingerprints = new long[capacity];
+        this.arrivedAt = new long[capacity];
+        this.paths = new byte[capacity];
+        this.prices = new double[capacity];
+        this.intervals = new int[capacity];
+    }
+
+    /**
+     * 找同一次触发从另一条路径的到达。同一条路径再次送达是新的触发，不算。
+     *
+     * @param fingerprint 非 0
+     * @param path        这一份的路径
+     * @param price       没有时为 NaN
+     * @param interval    周期（秒），没有时为 0
+     * @param nowNanos    System.nanoTime 时间
+     * @return 窗口内从别的路径见过时返回它的槽（用 {@link #path}、{@link #arrivedAt} 读取），否则 -1
+     */
+    public int find(long fingerprint, int path, double price, int interval, long nowNanos) {
+        for (int i = home(fingerprint); fingerprints[i] != 0; i = (i + 1) & mask) {
+            if (fingerprints[i] == fingerprint && paths[i] != path && nowNanos - arrivedAt[i] <= windowNanos
+                    && compatible(i, price, interval)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** 只有两边都有而且不同才算不同的触发 */
+    private boolean compatible(int slot, double price, int interval) {
+        if (!Double.isNaN(price) && !Double.isNaN(prices[slot]) && price != prices[slot]) {
+            return false;
+        }
+        return interval == 0 || intervals[slot] == 0 || interval == intervals[slot];
+    }
+
+    /** 第一次到达所走的路径 */
+    public int path(int slot) {
+        return paths[slot];
+    }
+
+    /** 第一次到达的时刻（System.nanoTime） */
+    public long arrivedAt(int slot) {
+        return arrivedAt[slot];
+    }
+
+    /** 记下一次触发的第一次到达；指纹、价格和周期都相同的条目（包括已过期的）直接覆盖 */
+    public void put(long fingerprint, int path, double price, int interval, long nowNanos) {
+        int i = indexOf(fingerprint, price, interval);
+        if (fingerprints[i] == 0) {
+            if (size >= maxSize) {
+                makeRoom(nowNanos);
+                i = indexOf(fingerprint, price, interval);
+            }
+            fingerprints[i] = fingerprint;
+            prices[i] = price;
+            intervals[i] = interval;
+            size++;
+        }
+        arrivedAt[i] = nowNanos;
+        paths[i] = (byte) path;
+    }
+
+    /** 完全相同的条目所在的槽，或者它应该插入的空槽 */
+    private int indexOf(long fingerprint, double price, int interval) {
+        int i = home(fingerprint);
+        while (fingerprints[i] != 0 && (fingerprints[i] != fingerprint
+                || Double.compare(prices[i], price) != 0 || intervals[i] != interval)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int home(long fingerprint) {
+        return mix(fingerprint) & mask;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private void makeRoom(long nowNanos) {
+        int oldest = -1;
+        for (int i = 0; i <= mask; i++) {
+            if (fingerprints[i] == 0) {
+                continue;
+            }
+            if (nowNanos - arrivedAt[i] > windowNanos) {
+                remove(i);
+                expired++;
+                // 后移可能把没检查过的条目挪到 i，重新检查这个位置
+                i--;
+            } else if (oldest < 0 || arrivedAt[i] - arrivedAt[oldest] < 0) {
+                oldest = i;
+            }
+        }
+        if (size >= maxSize) {
+            remove(oldest);
+            evicted++;
+        }
+    }
+
+    /** 删除后把探测链上后面的条目往前移，不留墓碑 */
+    private void remove(int slot) {
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (fingerprints[i] != 0) {
+            int home = home(fingerprints[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                fingerprints[hole] = fingerprints[i];
+                arrivedAt[hole] = arrivedAt[i];
+                paths[hole] = paths[i];
+                prices[hole] = prices[i];
+                intervals[hole] = intervals[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        fingerprints[hole] = 0;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintWindow{size=" + size + ", expired=" + expired + ", evicted=" + evicted + "}";
+    }
+}
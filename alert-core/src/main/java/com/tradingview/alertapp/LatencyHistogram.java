@@ -0,0 +1,114 @@
+package com.tradingview.alertapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的延迟直方图（HdrHistogram 的对数-线性分桶）。
+ *
+ * 0~127 每个值一个桶，之后每翻一倍用 64 个桶，相对误差不超过 1/64（约 1.6%）。
+ * 记录只是几次原子加法，不分配内存，可以从任意线程调用。
+ * 超过 maxValue 的值记在最后一个桶里，最大值仍然精确记录。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF = SUB_COUNT / 2;
+
+    private final long maxValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(long maxValue) {
+        if (maxValue < SUB_COUNT) {
+            throw new IllegalArgumentException("maxValue must be >= " + SUB_COUNT);
+        }
+        this.maxValue = maxValue;
+        this.counts = new AtomicLongArray(indexOf(maxValue) + 1);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        int top = (int) (value >>> shift); // [HALF, SUB_COUNT)
+        return SUB_COUNT + (shift - 1) * HALF + (top - HALF);
+    }
+
+    /** 桶里能出现的最大值，百分位按它报告（偏保守） */
+    static long highestValueAt(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_COUNT) / HALF + 1;
+        long top = (index - SUB_COUNT) % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(Math.min(value, maxValue)));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long n = total.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 不低于这个百分位的值；没有记录时为 0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + getCount()
+            + " p50=" + getValueAtPercentile(50)
+            + " p90=" + getValueAtPercentile(90)
+            + " p99=" + getValueAtPercentile(99)
+            + " max=" + getMax();
+    }
+}
@@ -0,0 +1,121 @@
+package com.tradingview.alertapp;
+
+import java.util.Locale;
+
+/**
+ * 进程内的警报延迟统计：每个来源、每段（相邻阶段之间和端到端）一个直方图，单位微秒。
+ * 用来比较通知、轮询、推送几条路径哪条更快，以及时间花在哪一段。
+ */
+public class LatencyStats {
+    // 超过1小时的都按1小时计（最大值仍然精确）
+    private static final long MAX_MICROS = 60L * 60 * 1000 * 1000;
+
+    public enum Segment {
+        POSTED_TO_RECEIVED(AlertTrace.Stage.POSTED, AlertTrace.Stage.RECEIVED),
+        RECEIVED_TO_CLASSIFIED(AlertTrace.Stage.RECEIVED, AlertTrace.Stage.CLASSIFIED),
+        CLASSIFIED_TO_DEDUPED(AlertTrace.Stage.CLASSIFIED, AlertTrace.Stage.DEDUPED),
+        DEDUPED_TO_SCHEDULED(AlertTrace.Stage.DEDUPED, AlertTrace.Stage.SCHEDULED),
+        SCHEDULED_TO_AUDIO(AlertTrace.Stage.SCHEDULED, AlertTrace.Stage.AUDIO_STARTED),
+        /** 从发出（没有发出时间时从收到）到开始出声 */
+        END_TO_END(AlertTrace.Stage.POSTED, AlertTrace.Stage.AUDIO_STARTED);
+
+        final AlertTrace.Stage from;
+        final AlertTrace.Stage to;
+
+        Segment(AlertTrace.Stage from, AlertTrace.Stage to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final LatencyStats INSTANCE = new LatencyStats();
+
+    private final LatencyHistogram[][] histograms =
+        new LatencyHistogram[AlertPipeline.Source.values().length][Segment.values().length];
+
+    public static LatencyStats get() {
+        return INSTANCE;
+    }
+
+    LatencyStats() {
+        for (LatencyHistogram[] bySource : histograms) {
+            for (int i = 0; i < bySource.length; i++) {
+                bySource[i] = new LatencyHistogram(MAX_MICROS);
+            }
+        }
+    }
+
+    /** 记录一条走完的警报，缺少的阶段对应的段跳过 */
+    public void record(AlertTrace trace) {
+        LatencyHistogram[] bySource = histograms[trace.source.ordinal()];
+        for (Segment segment : Segment.values()) {
+            AlertTrace.Stage from = segment.from;
+            if (segment == Segment.END_TO_END && !trace.has(from)) {
+                from = AlertTrace.Stage.RECEIVED;
+            }
+            long micros = trace.micros(from, segment.to);
+            if (micros >= 0) {
+                bySource[segment.ordinal()].record(micros);
+            }
+        }
+    }
+
+    public LatencyHistogram getHistogram(AlertPipeline.Source source, Segment segment) {
+        return histograms[source.ordinal()][segment.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram[] bySource : histograms) {
+            for (LatencyHistogram histogram : bySource) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /** 每个有数据的来源一行端到端延迟，给界面显示 */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (AlertPipeline.Source source : AlertPipeline.Source.values()) {
+            LatencyHistogram h = getHistogram(source, Segment.END_TO_END);
+            if (h.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%-8s n=%d  p50 %s  p99 %s  max %s\n",
+                source, h.getCount(), formatMicros(h.getValueAtPercentile(50)),
+                formatMicros(h.getValueAtPercentile(99)), formatMicros(h.getMax())));
+        }
+        return sb.length() == 0 ? "No alerts measured yet" : sb.toString().trim();
+    }
+
+    /** 所有来源、所有段的完整统计（CSV，单位微秒），用于导出 */
+    public String exportCsv() {
+        StringBuilder sb = new StringBuilder("source,segment,count,mean_us,p50_us,p90_us,p99_us,max_us\n");
+        for (AlertPipeline.Source source : AlertPipeline.Source.values()) {
+            for (Segment segment : Segment.values()) {
+                LatencyHistogram h = getHistogram(source, segment);
+                if (h.getCount() == 0) {
+                    continue;
+                }
+                sb.append(source).append(',').append(segment)
+                    .append(',').append(h.getCount())
+                    .append(',').append(h.getMean())
+                    .append(',').append(h.getValueAtPercentile(50))
+                    .append(',').append(h.getValueAtPercentile(90))
+                    .append(',').append(h.getValueAtPercentile(99))
+                    .append(',').append(h.getMax())
+                    .append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatMicros(long micros) {
+        if (micros < 1000) {
+            return micros + "us";
+        }
+        if (micros < 10000000) {
+            return String.format(Locale.US, "%.1fms", micros / 1000.0);
+        }
+        return String.format(Locale.US, "%.1fs", micros / 1000000.0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.tradingview.alertapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通知进入管线前的过滤链：包名/关键词分类 → 冷却期去重 → 提交给 {@link AlertPipeline}。
+ *
+ * NotificationListener 和 JVM 上的回放压测用的是同一份逻辑，只是通知的来源不同。
+ * 可以从任意线程调用（分类器只读，去重缓存和计数器都是线程安全的）。
+ */
+public class NotificationIngest {
+
+    public enum Result {
+        /** 不是警报 */
+        IGNORED,
+        /** 冷却期内已经处理过同一条通知 */
+        DUPLICATE,
+        SUBMITTED
+    }
+
+    private final AlertClassifier classifier;
+    private final ExpiringDedupeCache processed;
+    private final AlertPipeline pipeline;
+
+    private final AtomicLong ignored = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong submitted = new AtomicLong();
+
+    public NotificationIngest(AlertClassifier classifier, ExpiringDedupeCache processed, AlertPipeline pipeline) {
+        this.classifier = classifier;
+        this.processed = processed;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @param key      系统给通知的唯一 key，没有时为 null（按包名+标题+内容去重）
+     * @param postTime 通知发出的墙上时间，未知时为 0
+     */
+    public Result onNotification(String packageName, String key, String title, String text, long postTime) {
+        AlertTrace trace = AlertTrace.received(AlertPipeline.Source.LISTENER, postTime);
+
+        long classifyStart = System.nanoTime();
+        boolean alert = classifier.isAlert(packageName, title, text);
+        PowerStats.get().work(PowerStats.Work.CLASSIFY, System.nanoTime() - classifyStart);
+        if (!alert) {
+            ignored.incrementAndGet();
+            return Result.IGNORED;
+        }
+        trace.mark(AlertTrace.Stage.CLASSIFIED);
+
+        // 检查并标记，冷却期内的同一通知直接跳过
+        String notificationKey = key != null ? key : packageName + ":" + title + ":" + text;
+        if (!processed.markIfAbsent(notificationKey)) {
+            duplicates.incrementAndGet();
+            return Result.DUPLICATE;
+        }
+
+        submitted.incrementAndGet();
+        pipeline.submit(trace, packageName, title, text);
+        return Result.SUBMITTED;
+    }
+
+    public long getIgnoredCount() {
+        return ignored.get();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationIngest{ignored=" + ignored.get()
+            + ", duplicate=" + duplicates.get()
+            + ", submitted=" + submitted.get()
+            + ", " + processed + "}";
+    }
+}
@@ -0,0 +1,152 @@
+package com.tradingview.alertapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增量轮询协议的客户端状态：
+ * - since：最后处理的警报 id，服务器只返回它之后的警报
+ * - ETag：原样放进 If-None-Match，没有变化时服务器回 304，省掉响应体
+ * - ack：已处理的 id 攒成一批，捎带在下一次轮询的查询参数里
+ *
+ * 另外按 id 记住最近处理过的警报，轮询和推送重叠或服务器重发时不会重复报警。
+ * 所有方法都是线程安全的（轮询线程和推送线程会同时使用）。
+ */
+public class PollCursor {
+    private static final int MAX_ACK_BATCH = 50;
+    // 推送在线时不轮询，ack 会一直积压；超过上限丢弃最旧的，since 游标已经覆盖了它们
+    private static final int MAX_PENDING_ACKS = 200;
+    private static final int RECENT_ID_CAPACITY = 512;
+
+    /** 一次轮询请求的快照，请求成功后交回 {@link #complete} */
+    public static class Request {
+        public final String query;
+        public final String etag;
+        final int ackCount;
+
+        Request(String query, String etag, int ackCount) {
+            this.query = query;
+            this.etag = etag;
+            this.ackCount = ackCount;
+        }
+    }
+
+    private String lastId;
+    private String etag;
+    private final List<String> pendingAcks = new ArrayList<>();
+    private boolean dirty;
+
+    private final Map<String, Boolean> recentIds = new LinkedHashMap<String, Boolean>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_ID_CAPACITY;
+        }
+    };
+
+    public PollCursor(String lastId, String etag, String pendingAcks) {
+        this.lastId = lastId;
+        this.etag = etag;
+        if (pendingAcks != null && !pendingAcks.isEmpty()) {
+            for (String id : pendingAcks.split(",")) {
+                if (!id.isEmpty()) {
+                    this.pendingAcks.add(id);
+                }
+            }
+        }
+    }
+
+    public synchronized Request newRequest() {
+        StringBuilder query = new StringBuilder();
+        if (lastId != null) {
+            appendParam(query, "since", lastId);
+        }
+        int ackCount = Math.min(pendingAcks.size(), MAX_ACK_BATCH);
+        if (ackCount > 0) {
+            StringBuilder ids = new StringBuilder();
+            for (int i = 0; i < ackCount; i++) {
+                if (i > 0) {
+                    ids.append(',');
+                }
+                ids.append(pendingAcks.get(i));
+            }
+            appendParam(query, "ack", ids.toString());
+        }
+        return new Request(query.toString(), etag, ackCount);
+    }
+
+    /**
+     * 请求成功（200 或 304）后调用：确认已送达的 ack，保存新的 ETag。
+     */
+    public synchronized void complete(Request request, String newEtag) {
+        if (request.ackCount > 0) {
+            // 期间可能因为超过上限丢掉了最旧的几条，所以不能超过当前长度
+            pendingAcks.subList(0, Math.min(request.ackCount, pendingAcks.size())).clear();
+            dirty = true;
+        }
+        if (newEtag != null && !newEtag.equals(etag)) {
+            etag = newEtag;
+            dirty = true;
+        }
+    }
+
+    /**
+     * 记录一条警报被处理。
+     *
+     * @return false 表示这个 id 最近已经处理过，应当丢弃
+     */
+    public synchronized boolean markProcessed(String id) {
+        if (id == null) {
+            return true;
+        }
+        if (recentIds.containsKey(id)) {
+            return false;
+        }
+        recentIds.put(id, Boolean.TRUE);
+        lastId = id;
+        pendingAcks.add(id);
+        if (pendingAcks.size() > MAX_PENDING_ACKS) {
+            pendingAcks.remove(0);
+        }
+        dirty = true;
+        return true;
+    }
+
+    public synchronized String getLastId() {
+        return lastId;
+    }
+
+    public synchronized String getEtag() {
+        return etag;
+    }
+
+    public synchronized String getPendingAcks() {
+        StringBuilder sb = new StringBuilder();
+        for (String id : pendingAcks) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+
+    /** 自上次调用以来状态是否有变化（需要持久化） */
+    public synchronized boolean takeDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    private static void appendParam(StringBuilder query, String name, String value) {
+        query.append(query.length() == 0 ? '?' : '&').append(name).append('=');
+        try {
+            query.append(URLEncoder.encode(value, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
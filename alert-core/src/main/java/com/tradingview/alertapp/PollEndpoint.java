@@ -0,0 +1,218 @@
+package com.tradingview.alertapp;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个轮询端点：自己的连接（{@link PollTransport}）、解析器和健康记录。
+ *
+ * 健康按最近的结果打分，{@link AlertPoller} 据此挑主端点、决定什么时候对冲：
+ * - 最近 32 次的响应时间，p95 作为对冲延迟；最近 5 次的中位数给健康的端点排序，
+ *   刚恢复或刚变慢的端点几次之后就能换位置
+ * - 对冲输掉被中止的请求，已经等了的时间也记一个样本（至少这么慢），只参与排序，不算失败；
+ *   它只是对冲的结果，算进 p95 的话对冲延迟会越抬越高
+ * - 连续失败 {@link #DOWN_AFTER} 次算作宕机，暂停使用，冷却时间（默认 5 秒）每次翻倍，最长 5 分钟；
+ *   冷却结束后捎带一次探测请求，成功就恢复
+ *
+ * 同一时刻一个端点最多只有一个请求（连接和解析器都不是线程安全的），由 AlertPoller 通过
+ * {@link #tryAcquire} 保证。健康记录加锁，可以从任意线程读。
+ */
+public class PollEndpoint {
+    static final int DOWN_AFTER = 3;
+    public static final long DEFAULT_COOLDOWN_MS = 5000;
+    private static final long MAX_COOLDOWN_MS = 5 * 60 * 1000L;
+    private static final int SAMPLES = 32;
+    private static final int RECENT = 5;
+    // 样本太少时 p95 没有意义，用读超时的一半
+    private static final int MIN_SAMPLES = 8;
+
+    /** 排序用的状态，越小越优先 */
+    enum State {
+        HEALTHY, SUSPECT, PROBE, DOWN
+    }
+
+    final String url;
+    final PollTransport transport;
+    final AlertJsonReader reader = new AlertJsonReader();
+    private final long defaultHedgeMs;
+    private final long cooldownMs;
+
+    private boolean busy;
+    // 环形缓冲，单位微秒
+    private final long[] samples = new long[SAMPLES];
+    // 被中止的请求的样本，只是下限
+    private final boolean[] aborted = new boolean[SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+    private long lastSampleAt;
+    private int consecutiveFailures;
+    private long retryAt;
+
+    private long requests;
+    private long failures;
+    private long cancelled;
+    private long wins;
+    private long hedges;
+    private long probes;
+    private long outages;
+
+    PollEndpoint(String url, int connectTimeout, int readTimeout, long cooldownMs) {
+        this.url = url;
+        this.transport = new PollTransport(connectTimeout, readTimeout);
+        this.defaultHedgeMs = readTimeout / 2;
+        this.cooldownMs = cooldownMs;
+    }
+
+    /** 端点空闲时占用它，返回 false 表示上一个请求还没结束（比如还在等超时的探测） */
+    synchronized boolean tryAcquire(boolean hedge, boolean probe) {
+        if (busy) {
+            return false;
+        }
+        busy = true;
+        requests++;
+        if (hedge) {
+            hedges++;
+        }
+        if (probe) {
+            probes++;
+        }
+        return true;
+    }
+
+    synchronized void succeeded(long elapsedMicros, boolean won) {
+        busy = false;
+        sample(elapsedMicros, false);
+        consecutiveFailures = 0;
+        if (won) {
+            wins++;
+        }
+    }
+
+    /** 对冲输掉被中止 */
+    synchronized void cancelled(long elapsedMicros) {
+        busy = false;
+        cancelled++;
+        sample(elapsedMicros, true);
+    }
+
+    synchronized void failed(long nowMs) {
+        busy = false;
+        failures++;
+        consecutiveFailures++;
+        if (consecutiveFailures >= DOWN_AFTER) {
+            if (consecutiveFailures == DOWN_AFTER) {
+                outages++;
+            }
+            int doublings = Math.min(consecutiveFailures - DOWN_AFTER, 16);
+            retryAt = nowMs + Math.min(cooldownMs << doublings, MAX_COOLDOWN_MS);
+        }
+    }
+
+    private void sample(long elapsedMicros, boolean lowerBound) {
+        samples[nextSample] = elapsedMicros;
+        aborted[nextSample] = lowerBound;
+        nextSample = (nextSample + 1) % SAMPLES;
+        sampleCount = Math.min(sampleCount + 1, SAMPLES);
+        lastSampleAt = System.nanoTime();
+    }
+
+    /** 最近 n 个样本，排好序；completedOnly 时不要被中止的 */
+    private long[] recentSorted(int n, boolean completedOnly) {
+        n = Math.min(n, sampleCount);
+        long[] recent = new long[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = (nextSample - 1 - i + SAMPLES) % SAMPLES;
+            if (!completedOnly || !aborted[slot]) {
+                recent[count++] = samples[slot];
+            }
+        }
+        if (count < n) {
+            recent = Arrays.copyOf(recent, count);
+        }
+        Arrays.sort(recent);
+        return recent;
+    }
+
+    synchronized State state(long nowMs) {
+        if (consecutiveFailures == 0) {
+            return State.HEALTHY;
+        }
+        if (consecutiveFailures < DOWN_AFTER) {
+            return State.SUSPECT;
+        }
+        return nowMs >= retryAt ? State.PROBE : State.DOWN;
+    }
+
+    /** 冷却结束的时刻（宕机时有意义） */
+    synchronized long getRetryAt() {
+        return retryAt;
+    }
+
+    /** 最后一个样本的时刻（System.nanoTime），还没有样本时为 0 */
+    synchronized long getLastSampleAt() {
+        return lastSampleAt;
+    }
+
+    /** 最近几次响应时间的中位数（微秒），还没有样本时为 0 */
+    synchronized long typicalMicros() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+        long[] recent = recentSorted(RECENT, false);
+        return recent[(recent.length - 1) / 2];
+    }
+
+    /** 等这么久还没有响应就对冲到下一个端点：最近完整响应时间的 p95 */
+    synchronized long hedgeDelayMs() {
+        long[] sorted = recentSorted(SAMPLES, true);
+        if (sorted.length < MIN_SAMPLES) {
+            return defaultHedgeMs;
+        }
+        return sorted[(int) Math.ceil(sorted.length * 0.95) - 1] / 1000;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public PollTransport getTransport() {
+        return transport;
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    public synchronized long getFailureCount() {
+        return failures;
+    }
+
+    /** 这个端点的响应被采用的次数 */
+    public synchronized long getWinCount() {
+        return wins;
+    }
+
+    /** 冷却结束后的探测次数 */
+    public synchronized long getProbeCount() {
+        return probes;
+    }
+
+    /** 被判定为宕机的次数（连续失败 {@link #DOWN_AFTER} 次算一次） */
+    public synchronized long getOutageCount() {
+        return outages;
+    }
+
+    public synchronized boolean isDown() {
+        return consecutiveFailures >= DOWN_AFTER;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PollEndpoint{" + url + ", " + state(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()))
+            + ", requests=" + requests + ", won=" + wins + ", hedges=" + hedges + ", probes=" + probes
+            + ", cancelled=" + cancelled + ", failed=" + failures + ", outages=" + outages
+            + ", typical " + LatencyStats.formatMicros(typicalMicros())
+            + ", hedge after " + hedgeDelayMs() + "ms}";
+    }
+}
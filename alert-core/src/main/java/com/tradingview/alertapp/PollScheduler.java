@@ -0,0 +1,178 @@
+package com.tradingview.alertapp;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 轮询调度器：一个可复用的工作线程，同一个端点的轮询永远不会重叠。
+ *
+ * 下一次轮询在上一次结束后才安排（按开始时间对齐间隔），
+ * 服务器变慢时只会少轮询几次，而不会堆积线程和并发请求。
+ */
+public class PollScheduler {
+
+    public interface PollTask {
+        void poll() throws Exception;
+    }
+
+    private final PollTask task;
+    private final ScheduledExecutorService worker;
+    private volatile long intervalMs;
+
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+
+    private ScheduledFuture<?> nextPoll;
+    private boolean running;
+    // start() 要求立即轮询但还没开始的那次；正在进行的轮询结束后不能把它排到一个间隔之后
+    private boolean immediatePending;
+
+    public PollScheduler(final String name, PollTask task, long intervalMs) {
+        this.task = task;
+        this.intervalMs = intervalMs;
+        this.worker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PollScheduler-" + name);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * 开始轮询，立即执行第一次；已在运行时什么也不做。
+     * 上一次轮询还没结束（比如 stop() 之后马上又 start()）时，它结束后立即再轮询一次。
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        immediatePending = true;
+        scheduleLocked(0);
+    }
+
+    /** 暂停轮询；正在进行的那次会正常结束 */
+    public synchronized void stop() {
+        running = false;
+        immediatePending = false;
+        if (nextPoll != null) {
+            nextPoll.cancel(false);
+            nextPoll = null;
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        worker.shutdownNow();
+    }
+
+    /** 尽快轮询一次；如果已有请求在进行中，则计为跳过 */
+    public synchronized void pollNow() {
+        if (!running) {
+            return;
+        }
+        if (inFlight.get()) {
+            skipped.incrementAndGet();
+            return;
+        }
+        scheduleLocked(0);
+    }
+
+    public void setInterval(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public long getInterval() {
+        return intervalMs;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public long getOverrunCount() {
+        return overruns.get();
+    }
+
+    private void scheduleLocked(long delayMs) {
+        if (nextPoll != null) {
+            nextPoll.cancel(false);
+        }
+        nextPoll = worker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runPoll();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runPoll() {
+        if (!inFlight.compareAndSet(false, true)) {
+            skipped.incrementAndGet();
+            return;
+        }
+        synchronized (this) {
+            immediatePending = false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            task.poll();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+        } finally {
+            inFlight.set(false);
+        }
+        completed.incrementAndGet();
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long interval = intervalMs;
+        if (elapsed > interval) {
+            // 这次轮询占用了后面的时间片，被挤掉的轮询计为跳过
+            overruns.incrementAndGet();
+            skipped.addAndGet(elapsed / interval);
+        }
+
+        synchronized (this) {
+            if (running) {
+                scheduleLocked(immediatePending ? 0 : Math.max(0, interval - elapsed));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PollScheduler{interval=" + intervalMs
+            + "ms, inFlight=" + inFlight.get()
+            + ", completed=" + completed.get()
+            + ", failures=" + failures.get()
+            + ", skipped=" + skipped.get()
+            + ", overruns=" + overruns.get() + "}";
+    }
+}
@@ -0,0 +1,375 @@
+package com.tradingview.alertapp;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 轮询用的 HTTP 传输：连接在两次轮询之间保持（keep-alive），响应体要求 gzip，
+ * 分别统计建连、首字节和传输的耗时。
+ *
+ * 每 5 秒一次轮询，响应大多是 304 或几百字节，TCP/TLS 握手占了大部分延迟和耗电。
+ * HttpURLConnection（Android 上是 OkHttp）本身有连接池，但只有把响应体读完并关闭、
+ * 不调用 disconnect() 时，连接才会回到池里；以前每次轮询都 disconnect()，等于每次重新握手。
+ * 这里只在响应出错（超时、截断）时断开，那条连接的状态已经不确定，不能再用。
+ *
+ * Accept-Encoding 是自己设的，所以两个平台都不会自动解压（Android 只在调用方没设时才透明解压），
+ * 统一在这里解：自己解析 gzip 头，用复用的 Inflater 和缓冲解压。
+ * 尾部的 CRC32/长度不校验，TCP/TLS 已经保证了内容完整，截断由 deflate 流没结束就 EOF 发现。
+ *
+ * 同一个实例一次只能有一个请求（由 AlertPoller 保证），缓冲、Inflater 和流对象都在请求之间复用；
+ * {@link #abort} 和统计可以从任意线程调用。
+ */
+public class PollTransport {
+    // 超过1分钟的都按1分钟计
+    private static final long MAX_MICROS = 60L * 1000 * 1000;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    // gzip 的输入缓冲，也用来读完剩余的响应体
+    private final byte[] buffer = new byte[8192];
+    private final Inflater inflater = new Inflater(true);
+    private final WireStream wire = new WireStream();
+    private final GzipStream gzip = new GzipStream();
+
+    private final LatencyHistogram connectMicros = new LatencyHistogram(MAX_MICROS);
+    private final LatencyHistogram firstByteMicros = new LatencyHistogram(MAX_MICROS);
+    private final LatencyHistogram transferMicros = new LatencyHistogram(MAX_MICROS);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong gzipped = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong bodyBytes = new AtomicLong();
+    // 进行中的请求，abort 用
+    private volatile HttpURLConnection active;
+
+    public PollTransport(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * 发出 GET 并等到状态行。拿到的响应必须 {@link Response#release} 一次。
+     *
+     * @param etag 上次的 ETag，没有时为 null
+     * @throws IOException 连接失败或等响应超时；这次轮询已经记到 {@link PowerStats}
+     */
+    public Response get(String url, String etag) throws IOException {
+        requests.incrementAndGet();
+        long start = System.nanoTime();
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        active = conn;
+        try {
+            conn.setRequestMethod("GET");
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+            if (etag != null) {
+                conn.setRequestProperty("If-None-Match", etag);
+            }
+            // 池里有空闲连接时这一步几乎不花时间
+            conn.connect();
+            long connected = System.nanoTime();
+            int code = conn.getResponseCode();
+            long firstByte = System.nanoTime();
+            connectMicros.record((connected - start) / 1000);
+            firstByteMicros.record((firstByte - connected) / 1000);
+            return new Response(conn, code, firstByte);
+        } catch (IOException e) {
+            active = null;
+            conn.disconnect();
+            failures.incrementAndGet();
+            dropped.incrementAndGet();
+            PowerStats.get().polled(0);
+            throw e;
+        }
+    }
+
+    /** 一次请求的响应，只能在发起请求的线程上使用 */
+    public final class Response {
+        public final int code;
+        private final HttpURLConnection conn;
+        private final long firstByteAt;
+        private boolean bodyOpened;
+        private boolean released;
+
+        Response(HttpURLConnection conn, int code, long firstByteAt) {
+            this.conn = conn;
+            this.code = code;
+            this.firstByteAt = firstByteAt;
+        }
+
+        public String getHeader(String name) {
+            return conn.getHeaderField(name);
+        }
+
+        /** 200 的响应体，已经按 Content-Encoding 解压；release 之后不能再读 */
+        public InputStream body() throws IOException {
+            bodyOpened = true;
+            wire.reset(conn.getInputStream());
+            if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+                gzipped.incrementAndGet();
+                gzip.reset(wire);
+                return gzip;
+            }
+            return wire;
+        }
+
+        /**
+         * 收尾，不抛异常。
+         *
+         * @param reusable 响应正常结束：读完剩下的字节（解析器在 JSON 结束处就停了，gzip 还有尾部）
+         *                 并关闭，连接回到池里；false 时（读超时、截断）断开连接
+         */
+        public void release(boolean reusable) {
+            if (released) {
+                return;
+            }
+            released = true;
+            active = null;
+            if (!bodyOpened) {
+                // 304 和错误响应也要把（可能有的）响应体读完，连接才能复用
+                wire.reset(null);
+                if (reusable) {
+                    try {
+                        wire.reset(code >= 400 ? conn.getErrorStream() : conn.getInputStream());
+                    } catch (IOException e) {
+                        reusable = false;
+                    }
+                }
+            }
+            if (reusable && wire.isOpen()) {
+                try {
+                    while (wire.read(buffer, 0, buffer.length) >= 0) {
+                        // 丢弃
+                    }
+                    wire.close();
+                } catch (IOException e) {
+                    reusable = false;
+                }
+            }
+            if (reusable) {
+                if (bodyOpened) {
+                    transferMicros.record((System.nanoTime() - firstByteAt) / 1000);
+                }
+            } else {
+                conn.disconnect();
+                dropped.incrementAndGet();
+            }
+            if (!reusable || (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_NOT_MODIFIED)) {
+                failures.incrementAndGet();
+            }
+            wireBytes.addAndGet(wire.count);
+            bodyBytes.addAndGet(bodyOpened && gzip.in == wire ? gzip.count : wire.count);
+            PowerStats.get().polled(wire.count);
+            wire.reset(null);
+            gzip.in = null;
+        }
+    }
+
+    /**
+     * 从别的线程中止进行中的请求（对冲输掉的那个）：断开连接，正在阻塞的读立即抛出 IOException。
+     * 没有进行中的请求时什么也不做。
+     */
+    public void abort() {
+        HttpURLConnection conn = active;
+        if (conn != null) {
+            conn.disconnect();
+        }
+    }
+
+    /** 建连耗时（微秒），连接复用时接近 0 */
+    public LatencyHistogram getConnectMicros() {
+        return connectMicros;
+    }
+
+    /** 连接好之后到收到状态行（微秒），主要是往返时间加服务器处理时间 */
+    public LatencyHistogram getFirstByteMicros() {
+        return firstByteMicros;
+    }
+
+    /** 收到状态行之后读完 200 响应体（微秒） */
+    public LatencyHistogram getTransferMicros() {
+        return transferMicros;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /** 连接失败、超时、截断或非 200/304 */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /** 线上读到的响应体字节数（压缩后） */
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    /** 解压后的响应体字节数 */
+    public long getBodyBytes() {
+        return bodyBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PollTransport{requests=" + requests.get()
+            + ", failed=" + failures.get()
+            + ", dropped=" + dropped.get()
+            + ", gzip=" + gzipped.get()
+            + ", wire=" + PowerStats.formatBytes(wireBytes.get())
+            + ", body=" + PowerStats.formatBytes(bodyBytes.get())
+            + ", connect p50 " + LatencyStats.formatMicros(connectMicros.getValueAtPercentile(50))
+            + " p99 " + LatencyStats.formatMicros(connectMicros.getValueAtPercentile(99))
+            + ", firstByte p50 " + LatencyStats.formatMicros(firstByteMicros.getValueAtPercentile(50))
+            + " p99 " + LatencyStats.formatMicros(firstByteMicros.getValueAtPercentile(99))
+            + ", transfer p50 " + LatencyStats.formatMicros(transferMicros.getValueAtPercentile(50))
+            + " p99 " + LatencyStats.formatMicros(transferMicros.getValueAtPercentile(99)) + "}";
+    }
+
+    /** 线上的原始响应体，数一下实际读了多少字节；每个请求 reset 一次 */
+    private static final class WireStream extends FilterInputStream {
+        long count;
+
+        WireStream() {
+            super(null);
+        }
+
+        void reset(InputStream in) {
+            this.in = in;
+            this.count = 0;
+        }
+
+        boolean isOpen() {
+            return in != null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /** 解压 gzip 响应体（RFC 1952），每个请求 reset 一次 */
+    private final class GzipStream extends InputStream {
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final byte[] single = new byte[1];
+        InputStream in;
+        long count;
+
+        void reset(InputStream in) throws IOException {
+            this.in = in;
+            this.count = 0;
+            inflater.reset();
+            readHeader();
+        }
+
+        private void readHeader() throws IOException {
+            if (readByte() != 0x1f || readByte() != 0x8b || readByte() != 8) {
+                throw new IOException("Not a gzip body");
+            }
+            int flags = readByte();
+            // MTIME(4) XFL(1) OS(1)
+            skipBytes(6);
+            if ((flags & FEXTRA) != 0) {
+                skipBytes(readByte() | readByte() << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                while (readByte() != 0) {
+                    // 文件名
+                }
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (readByte() != 0) {
+                    // 注释
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                skipBytes(2);
+            }
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated gzip header");
+            }
+            return b;
+        }
+
+        private void skipBytes(int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                readByte();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        count += n;
+                        return n;
+                    }
+                    if (inflater.finished()) {
+                        return -1;
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new IOException("Invalid gzip body");
+                    }
+                    if (inflater.needsInput()) {
+                        int r = in.read(buffer, 0, buffer.length);
+                        if (r < 0) {
+                            throw new EOFException("Truncated gzip body after " + count + " bytes");
+                        }
+                        inflater.setInput(buffer, 0, r);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid gzip body", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.tradingview.alertapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 耗电预算，和 {@link PowerStats} 折算出的速率比较，超出时给出警告。
+ *
+ * 配置来自资源里的字符串数组，每条 "名字=上限"，没写的用默认值：
+ *   wakelock_ms_per_day=3600000    WakeLock 每天最多持有 1 小时
+ *   poll_wakeups_per_hour=900      轮询每小时最多 900 次（5 秒间隔是 720 次）
+ *   poll_bytes_per_day=52428800    轮询每天最多 50MB
+ *   timer_wakeups_per_hour=60      精确闹钟每小时最多 60 次
+ *   cpu_ms_per_day=60000           分类和解析每天最多 60 秒 CPU
+ * 上限为 0 表示不检查这一项。记账不满 1 小时不报警，刚启动时的速率没有代表性。
+ */
+public class PowerBudget {
+    public static final String WAKELOCK = "wakelock_ms_per_day";
+    public static final String POLL_WAKEUPS = "poll_wakeups_per_hour";
+    public static final String POLL_BYTES = "poll_bytes_per_day";
+    public static final String TIMER_WAKEUPS = "timer_wakeups_per_hour";
+    public static final String CPU = "cpu_ms_per_day";
+
+    private static final long MIN_OBSERVATION_MS = PowerStats.HOUR_MS;
+
+    private long wakeLockMsPerDay = 60 * 60 * 1000L;
+    private long pollWakeupsPerHour = 900;
+    private long pollBytesPerDay = 50L * 1024 * 1024;
+    private long timerWakeupsPerHour = 60;
+    private long cpuMsPerDay = 60 * 1000L;
+
+    public PowerBudget() {
+    }
+
+    /**
+     * @throws IllegalArgumentException 格式不对或名字不认识
+     */
+    public PowerBudget(String[] specs) {
+        for (String spec : specs) {
+            int eq = spec.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid power budget: " + spec);
+            }
+            String name = spec.substring(0, eq).trim();
+            long value;
+            try {
+                value = Long.parseLong(spec.substring(eq + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid power budget: " + spec, e);
+            }
+            if (value < 0) {
+                throw new IllegalArgumentException("Negative power budget: " + spec);
+            }
+            switch (name) {
+                case WAKELOCK: wakeLockMsPerDay = value; break;
+                case POLL_WAKEUPS: pollWakeupsPerHour = value; break;
+                case POLL_BYTES: pollBytesPerDay = value; break;
+                case TIMER_WAKEUPS: timerWakeupsPerHour = value; break;
+                case CPU: cpuMsPerDay = value; break;
+                default: throw new IllegalArgumentException("Unknown power budget: " + name);
+            }
+        }
+    }
+
+    /**
+     * @return 每个超出的预算一条说明（以预算名开头），没有超出时为空
+     */
+    public List<String> check(PowerStats stats, long nowMs) {
+        List<String> exceeded = new ArrayList<>();
+        if (nowMs - stats.getSince() < MIN_OBSERVATION_MS) {
+            return exceeded;
+        }
+        double wakeLock = stats.perDay(stats.getWakeLockMs(), nowMs);
+        if (wakeLockMsPerDay > 0 && wakeLock > wakeLockMsPerDay) {
+            exceeded.add(String.format(Locale.US, "%s: WakeLock %s/day over budget %s", WAKELOCK,
+                PowerStats.formatDuration((long) wakeLock), PowerStats.formatDuration(wakeLockMsPerDay)));
+        }
+        double polls = stats.perHour(stats.getWakeups(PowerStats.Wakeup.POLL), nowMs);
+        if (pollWakeupsPerHour > 0 && polls > pollWakeupsPerHour) {
+            exceeded.add(String.format(Locale.US, "%s: %.0f polls/h over budget %d", POLL_WAKEUPS,
+                polls, pollWakeupsPerHour));
+        }
+        double bytes = stats.perDay(stats.getPollBytesTotal(), nowMs);
+        if (pollBytesPerDay > 0 && bytes > pollBytesPerDay) {
+            exceeded.add(String.format(Locale.US, "%s: poll traffic %s/day over budget %s", POLL_BYTES,
+                PowerStats.formatBytes((long) bytes), PowerStats.formatBytes(pollBytesPerDay)));
+        }
+        double timers = stats.perHour(stats.getWakeups(PowerStats.Wakeup.TIMER_ALARM), nowMs);
+        if (timerWakeupsPerHour > 0 && timers > timerWakeupsPerHour) {
+            exceeded.add(String.format(Locale.US, "%s: %.0f timer alarms/h over budget %d", TIMER_WAKEUPS,
+                timers, timerWakeupsPerHour));
+        }
+        long cpuNanos = stats.getWorkNanos(PowerStats.Work.CLASSIFY) + stats.getWorkNanos(PowerStats.Work.PARSE);
+        double cpu = stats.perDay(cpuNanos / 1000000, nowMs);
+        if (cpuMsPerDay > 0 && cpu > cpuMsPerDay) {
+            exceeded.add(String.format(Locale.US, "%s: CPU %s/day over budget %s", CPU,
+                PowerStats.formatDuration((long) cpu), PowerStats.formatDuration(cpuMsPerDay)));
+        }
+        return exceeded;
+    }
+
+    public long getWakeLockMsPerDay() {
+        return wakeLockMsPerDay;
+    }
+
+    public long getPollWakeupsPerHour() {
+        return pollWakeupsPerHour;
+    }
+
+    public long getPollBytesPerDay() {
+        return pollBytesPerDay;
+    }
+
+    public long getTimerWakeupsPerHour() {
+        return timerWakeupsPerHour;
+    }
+
+    public long getCpuMsPerDay() {
+        return cpuMsPerDay;
+    }
+}
@@ -0,0 +1,252 @@
+package com.tradingview.alertapp;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的耗电账本：WakeLock 按原因累计的持有时间、各类唤醒次数、每次轮询传输的字节数、
+ * 分类和解析花掉的 CPU 时间。手机 7x24 运行，这些决定了一天的耗电。
+ *
+ * 记账都是原子加法，不加锁、不分配（WakeLock 原因第一次出现时除外），可以从任意线程调用。
+ * 速率按墙上时间从 {@link #reset} 算起折算成每小时/每天，和 {@link PowerBudget} 比较。
+ */
+public class PowerStats {
+    // 单次轮询超过 16MB 的按 16MB 计
+    private static final long MAX_POLL_BYTES = 16L * 1024 * 1024;
+    static final long HOUR_MS = 60 * 60 * 1000L;
+    static final long DAY_MS = 24 * HOUR_MS;
+
+    public enum Wakeup {
+        /** 一次轮询请求 */
+        POLL,
+        /** 推送连接（重新）建立 */
+        STREAM_CONNECT,
+        /** 警报定时用的精确闹钟 */
+        TIMER_ALARM
+    }
+
+    public enum Work {
+        /** 通知分类（每条通知都要做，包括不是警报的） */
+        CLASSIFY,
+        /** 警报字段解析 */
+        PARSE
+    }
+
+    private static final PowerStats INSTANCE = new PowerStats();
+
+    private final ConcurrentHashMap<String, AtomicLong> wakeLockMs = new ConcurrentHashMap<>();
+    private final AtomicLongArray wakeups = new AtomicLongArray(Wakeup.values().length);
+    private final AtomicLongArray workNanos = new AtomicLongArray(Work.values().length);
+    private final AtomicLongArray workCount = new AtomicLongArray(Work.values().length);
+    private final LatencyHistogram pollBytes = new LatencyHistogram(MAX_POLL_BYTES);
+    private final AtomicLong pollBytesTotal = new AtomicLong();
+    private volatile long since = System.currentTimeMillis();
+
+    public static PowerStats get() {
+        return INSTANCE;
+    }
+
+    PowerStats() {
+    }
+
+    /** WakeLock 释放（或超时）时记一次持有时间 */
+    public void wakeLockHeld(String reason, long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        AtomicLong total = wakeLockMs.get(reason);
+        if (total == null) {
+            // computeIfAbsent 在 API 24 以下没有（minSdk 21），用 putIfAbsent
+            AtomicLong created = new AtomicLong();
+            AtomicLong prev = wakeLockMs.putIfAbsent(reason, created);
+            total = prev != null ? prev : created;
+        }
+        total.addAndGet(millis);
+    }
+
+    public void wakeup(Wakeup wakeup) {
+        wakeups.incrementAndGet(wakeup.ordinal());
+    }
+
+    /** 一次轮询完成（包括 304 和失败），bytes 是线上读到的响应体字节数（压缩后） */
+    public void polled(long bytes) {
+        wakeups.incrementAndGet(Wakeup.POLL.ordinal());
+        pollBytes.record(bytes);
+        pollBytesTotal.addAndGet(bytes);
+    }
+
+    public void work(Work work, long nanos) {
+        workNanos.addAndGet(work.ordinal(), nanos);
+        workCount.incrementAndGet(work.ordinal());
+    }
+
+    public void reset() {
+        wakeLockMs.clear();
+        for (int i = 0; i < wakeups.length(); i++) {
+            wakeups.set(i, 0);
+        }
+        for (int i = 0; i < workNanos.length(); i++) {
+            workNanos.set(i, 0);
+            workCount.set(i, 0);
+        }
+        pollBytes.reset();
+        pollBytesTotal.set(0);
+        since = System.currentTimeMillis();
+    }
+
+    /** 开始记账到现在的毫秒数，至少 1 分钟，避免刚启动时折算出离谱的速率 */
+    long elapsedMs(long nowMs) {
+        return Math.max(60 * 1000L, nowMs - since);
+    }
+
+    /** 开始记账（或上次 reset）的墙上时间 */
+    public long getSince() {
+        return since;
+    }
+
+    public long getWakeLockMs() {
+        long total = 0;
+        for (AtomicLong ms : wakeLockMs.values()) {
+            total += ms.get();
+        }
+        return total;
+    }
+
+    public long getWakeups(Wakeup wakeup) {
+        return wakeups.get(wakeup.ordinal());
+    }
+
+    public long getPollBytesTotal() {
+        return pollBytesTotal.get();
+    }
+
+    public long getWorkNanos(Work work) {
+        return workNanos.get(work.ordinal());
+    }
+
+    /** 折算成每小时 */
+    double perHour(long value, long nowMs) {
+        return value * (double) HOUR_MS / elapsedMs(nowMs);
+    }
+
+    /** 折算成每天 */
+    double perDay(long value, long nowMs) {
+        return value * (double) DAY_MS / elapsedMs(nowMs);
+    }
+
+    /** 给界面显示：每项一行，按天/小时折算，超预算的行后面标出来 */
+    public String summary(PowerBudget budget) {
+        long now = System.currentTimeMillis();
+        List<String> exceeded = budget.check(this, now);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Since %s ago\n", formatDuration(now - since)));
+        sb.append(String.format(Locale.US, "WakeLock %s/day%s\n",
+            formatDuration((long) perDay(getWakeLockMs(), now)), mark(exceeded, PowerBudget.WAKELOCK)));
+        for (Map.Entry<String, Long> entry : wakeLockByReason().entrySet()) {
+            sb.append(String.format(Locale.US, "  %-10s %s\n", entry.getKey(), formatDuration(entry.getValue())));
+        }
+        sb.append(String.format(Locale.US, "Poll %.0f/h%s  %s/day%s  p50 %dB  max %dB\n",
+            perHour(getWakeups(Wakeup.POLL), now), mark(exceeded, PowerBudget.POLL_WAKEUPS),
+            formatBytes((long) perDay(getPollBytesTotal(), now)), mark(exceeded, PowerBudget.POLL_BYTES),
+            pollBytes.getValueAtPercentile(50), pollBytes.getMax()));
+        sb.append(String.format(Locale.US, "Stream connects %.1f/h  timer alarms %.1f/h%s\n",
+            perHour(getWakeups(Wakeup.STREAM_CONNECT), now),
+            perHour(getWakeups(Wakeup.TIMER_ALARM), now), mark(exceeded, PowerBudget.TIMER_WAKEUPS)));
+        long cpuNanos = getWorkNanos(Work.CLASSIFY) + getWorkNanos(Work.PARSE);
+        sb.append(String.format(Locale.US, "CPU %s/day%s  (classify %d, parse %d)",
+            formatDuration((long) perDay(cpuNanos / 1000000, now)), mark(exceeded, PowerBudget.CPU),
+            workCount.get(Work.CLASSIFY.ordinal()), workCount.get(Work.PARSE.ordinal())));
+        for (String warning : exceeded) {
+            sb.append("\n⚠ ").append(warning);
+        }
+        return sb.toString();
+    }
+
+    private static String mark(List<String> exceeded, String key) {
+        for (String warning : exceeded) {
+            if (warning.startsWith(key)) {
+                return " ⚠";
+            }
+        }
+        return "";
+    }
+
+    private Map<String, Long> wakeLockByReason() {
+        Map<String, Long> byReason = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : wakeLockMs.entrySet()) {
+            byReason.put(entry.getKey(), entry.getValue().get());
+        }
+        return byReason;
+    }
+
+    /** 所有计数的原始值和折算值（CSV），用于导出 */
+    public String exportCsv(PowerBudget budget) {
+        long now = System.currentTimeMillis();
+        long elapsed = now - since;
+        StringBuilder sb = new StringBuilder("metric,total,per_hour,per_day,budget_per_day\n");
+        row(sb, "elapsed_ms", elapsed, -1, -1);
+        row(sb, "wakelock_ms", getWakeLockMs(), now, budget.getWakeLockMsPerDay());
+        for (Map.Entry<String, Long> entry : wakeLockByReason().entrySet()) {
+            row(sb, "wakelock_ms:" + entry.getKey(), entry.getValue(), now, -1);
+        }
+        for (Wakeup wakeup : Wakeup.values()) {
+            long limit = wakeup == Wakeup.POLL ? budget.getPollWakeupsPerHour() * 24
+                : wakeup == Wakeup.TIMER_ALARM ? budget.getTimerWakeupsPerHour() * 24 : -1;
+            row(sb, "wakeups:" + wakeup, getWakeups(wakeup), now, limit);
+        }
+        row(sb, "poll_bytes", getPollBytesTotal(), now, budget.getPollBytesPerDay());
+        row(sb, "poll_bytes_p50", pollBytes.getValueAtPercentile(50), -1, -1);
+        row(sb, "poll_bytes_p99", pollBytes.getValueAtPercentile(99), -1, -1);
+        row(sb, "poll_bytes_max", pollBytes.getMax(), -1, -1);
+        for (Work work : Work.values()) {
+            row(sb, "cpu_us:" + work, getWorkNanos(work) / 1000, now, -1);
+            row(sb, "count:" + work, workCount.get(work.ordinal()), now, -1);
+        }
+        row(sb, "cpu_ms", (getWorkNanos(Work.CLASSIFY) + getWorkNanos(Work.PARSE)) / 1000000, now,
+            budget.getCpuMsPerDay());
+        return sb.toString();
+    }
+
+    /** 预算一律按每天给出（每小时的预算乘 24），nowMs 为 -1 时不折算 */
+    private void row(StringBuilder sb, String metric, long total, long nowMs, long budgetPerDay) {
+        sb.append(metric).append(',').append(total).append(',');
+        if (nowMs >= 0) {
+            sb.append(String.format(Locale.US, "%.1f,%.1f", perHour(total, nowMs), perDay(total, nowMs)));
+        } else {
+            sb.append(',');
+        }
+        sb.append(',');
+        if (budgetPerDay >= 0) {
+            sb.append(budgetPerDay);
+        }
+        sb.append('\n');
+    }
+
+    static String formatDuration(long ms) {
+        if (ms < 1000) {
+            return ms + "ms";
+        }
+        if (ms < 60 * 1000) {
+            return String.format(Locale.US, "%.1fs", ms / 1000.0);
+        }
+        if (ms < HOUR_MS) {
+            return String.format(Locale.US, "%.1fmin", ms / 60000.0);
+        }
+        return String.format(Locale.US, "%.1fh", ms / (double) HOUR_MS);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.US, "%.1fKB", bytes / 1024.0);
+        }
+        return String.format(Locale.US, "%.1fMB", bytes / 1048576.0);
+    }
+}
@@ -0,0 +1,299 @@
+package com.tradingview.alertapp;
+
+/**
+ * 分层时间轮：所有警报的定时任务（结束一轮、重复、合并窗口关闭）都挂在这里，
+ * 调用方只需要在 {@link #nextWakeup()} 的时刻安排一次唤醒，而不是每个定时任务一条消息。
+ *
+ * 每层 64 个槽，第 0 层一格一个 tick，上一层一格是下一层一整圈。
+ * 加入和取消都是 O(1)（槽内是双向链表）；上层的槽在下层转完一圈时整体下放（cascade）。
+ * 到期时间按 tick 向上取整，任务不会提前执行，最多晚一个 tick。
+ *
+ * 时间单位由调用方决定（AlertManager 用 elapsedRealtime，深度睡眠时也在走）。
+ * 不是线程安全的，只能在同一个线程上使用。
+ */
+public class TimerWheel {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    /** 一个定时任务，可以取消 */
+    public static final class Timeout {
+        final Runnable task;
+        final long deadline;
+        Bucket bucket;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /** 还没执行也没取消 */
+        public boolean isPending() {
+            return bucket != null;
+        }
+
+        /** 取消，O(1)；已经执行或取消过时返回 false */
+        public boolean cancel() {
+            Bucket b = bucket;
+            if (b == null) {
+                return false;
+            }
+            b.remove(this);
+            b.wheel.size--;
+            b.wheel.cancelled++;
+            return true;
+        }
+    }
+
+    private static final class Bucket {
+        final TimerWheel wheel;
+        Timeout head;
+        Timeout tail;
+
+        Bucket(TimerWheel wheel) {
+            this.wheel = wheel;
+        }
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        void add(Timeout t) {
+            t.bucket = this;
+            t.prev = tail;
+            t.next = null;
+            if (tail == null) {
+                head = t;
+            } else {
+                tail.next = t;
+            }
+            tail = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev == null) {
+                head = t.next;
+            } else {
+                t.prev.next = t.next;
+            }
+            if (t.next == null) {
+                tail = t.prev;
+            } else {
+                t.next.prev = t.prev;
+            }
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+        }
+
+        /** 把整条链表移到 target（target 必须为空） */
+        void moveTo(Bucket target) {
+            for (Timeout t = head; t != null; t = t.next) {
+                t.bucket = target;
+            }
+            target.head = head;
+            target.tail = tail;
+            head = null;
+            tail = null;
+        }
+    }
+
+    private final long tickMs;
+    private final Bucket[][] levels;
+    // 已经过期（加入时就过期，或在执行过程中新加入的），下一次 advance 时执行
+    private final Bucket due;
+    private final Bucket running;
+    private final long maxTicks;
+    /** 下一个要处理的 tick */
+    private long currentTick;
+    private int size;
+
+    // 统计
+    private long scheduled;
+    private long fired;
+    private long cancelled;
+    private long cascaded;
+
+    /**
+     * @param tickMs 精度（第 0 层一格的长度）
+     * @param levels 层数，可覆盖的最长时间为 tickMs * 64^levels，更远的先放在最高层，到时再重新安排
+     * @param now    当前时间
+     */
+    public TimerWheel(long tickMs, int levels, long now) {
+        if (tickMs <= 0 || levels < 1 || BITS * levels > 60) {
+            throw new IllegalArgumentException("Invalid wheel: tick=" + tickMs + ", levels=" + levels);
+        }
+        this.tickMs = tickMs;
+        this.levels = new Bucket[levels][SLOTS];
+        for (Bucket[] level : this.levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket(this);
+            }
+        }
+        this.due = new Bucket(this);
+        this.running = new Bucket(this);
+        this.maxTicks = (1L << (BITS * levels)) - 1;
+        this.currentTick = now / tickMs;
+    }
+
+    /** 在 deadline 或之后（最多晚一个 tick）执行 task */
+    public Timeout schedule(Runnable task, long deadline) {
+        Timeout t = new Timeout(task, deadline);
+        place(t);
+        size++;
+        scheduled++;
+        return t;
+    }
+
+    private void place(Timeout t) {
+        long expTick = ceilDiv(t.deadline, tickMs);
+        long delta = expTick - currentTick;
+        if (delta < 0) {
+            due.add(t);
+            return;
+        }
+        if (delta > maxTicks) {
+            // 超出最高层范围：先放到最远的位置，下放时会按真实的 deadline 重新安排
+            delta = maxTicks;
+            expTick = currentTick + delta;
+        }
+        int level = 0;
+        while (delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        levels[level][(int) ((expTick >>> (BITS * level)) & MASK)].add(t);
+    }
+
+    /**
+     * 执行所有 deadline 不晚于 now 的任务（按 tick 顺序），任务里可以安排或取消其他任务。
+     *
+     * @return 执行的任务数
+     */
+    public int advance(long now) {
+        int count = runDue();
+        long nowTick = now / tickMs;
+        while (currentTick <= nowTick) {
+            if (size == 0) {
+                // 空的时候直接跳到现在
+                currentTick = nowTick + 1;
+                break;
+            }
+            long tick = currentTick;
+            int index = (int) (tick & MASK);
+            if (index == 0) {
+                cascade(tick);
+            }
+            levels[0][index].moveTo(running);
+            currentTick = tick + 1;
+            count += run(running);
+            count += runDue();
+        }
+        return count;
+    }
+
+    /** 第 0 层转完一圈：把上层对应的槽下放，上层也转完一圈时继续往上 */
+    private void cascade(long tick) {
+        for (int level = 1; level < levels.length; level++) {
+            int index = (int) ((tick >>> (BITS * level)) & MASK);
+            Bucket bucket = levels[level][index];
+            // 先取下整条链表再逐个重新放置，放置时可能又回到同一层
+            bucket.moveTo(running);
+            while (!running.isEmpty()) {
+                Timeout t = running.head;
+                running.remove(t);
+                place(t);
+                cascaded++;
+            }
+            if (index != 0) {
+                break;
+            }
+        }
+    }
+
+    private int runDue() {
+        int count = 0;
+        while (!due.isEmpty()) {
+            due.moveTo(running);
+            count += run(running);
+        }
+        return count;
+    }
+
+    private int run(Bucket bucket) {
+        int count = 0;
+        while (!bucket.isEmpty()) {
+            Timeout t = bucket.head;
+            bucket.remove(t);
+            size--;
+            fired++;
+            count++;
+            t.task.run();
+        }
+        return count;
+    }
+
+    /**
+     * 下一次需要调用 {@link #advance(long)} 的时刻：最近一个任务的到期时间，
+     * 或者上层某个非空槽需要下放的时刻（之后再问一次）。没有任务时返回 Long.MAX_VALUE。
+     */
+    public long nextWakeup() {
+        if (!due.isEmpty()) {
+            return currentTick * tickMs;
+        }
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        long best = Long.MAX_VALUE;
+        // 第 0 层的槽里只有这一圈的任务，第一个非空槽就是最早的
+        for (int k = 0; k < SLOTS; k++) {
+            long tick = currentTick + k;
+            if (!levels[0][(int) (tick & MASK)].isEmpty()) {
+                best = tick;
+                break;
+            }
+        }
+        // 上层：下一个非空槽开始下放的 tick
+        for (int level = 1; level < levels.length; level++) {
+            int shift = BITS * level;
+            long base = currentTick >>> shift;
+            for (int k = 0; k <= SLOTS; k++) {
+                long tick = (base + k) << shift;
+                if (tick >= best) {
+                    break;
+                }
+                if (tick < currentTick) {
+                    continue;
+                }
+                if (!levels[level][(int) ((base + k) & MASK)].isEmpty()) {
+                    best = tick;
+                    break;
+                }
+            }
+        }
+        return best == Long.MAX_VALUE ? best : best * tickMs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        long q = a / b;
+        return q * b < a ? q + 1 : q;
+    }
+
+    @Override
+    public String toString() {
+        return "TimerWheel{pending=" + size
+            + ", scheduled=" + scheduled
+            + ", fired=" + fired
+            + ", cancelled=" + cancelled
+            + ", cascaded=" + cascaded + "}";
+    }
+}
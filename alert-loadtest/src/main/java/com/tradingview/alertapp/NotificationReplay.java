@@ -0,0 +1,383 @@
+package com.tradingview.alertapp;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * 在 JVM 上按指定速率回放通知，走和 NotificationListener 完全相同的
+ * 分类 → 去重 → 管线路径，报告吞吐、误报/漏报、去重效果、每条通知的分配量和各段延迟。
+ *
+ * 用法（在项目根目录）：
+ *   ./gradlew :alert-loadtest:run --args="--rate 2000 --count 200000"
+ *   ./gradlew :alert-loadtest:run --args="--input captured.tsv --rate 0"
+ *
+ * --rate 0 表示不限速。分类规则默认从 app 的 arrays.xml 读取，和设备上一致。
+ */
+public final class NotificationReplay {
+    private static final String DEFAULT_ARRAYS = "app/src/main/res/values/arrays.xml";
+    // 与 NotificationListener 一致
+    private static final long NOTIFICATION_COOLDOWN = 60000;
+    private static final int MAX_TRACKED_NOTIFICATIONS = 1024;
+    private static final long DRAIN_TIMEOUT_MS = 30000;
+
+    private NotificationReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = 1000;
+        int count = 100000;
+        int warmup = 20000;
+        long seed = 42;
+        String mixSpec = null;
+        Double dupRate = null;
+        File input = null;
+        File arrays = new File(DEFAULT_ARRAYS);
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--rate": rate = Integer.parseInt(value); break;
+                case "--count": count = Integer.parseInt(value); break;
+                case "--warmup": warmup = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--mix": mixSpec = value; break;
+                case "--dup": dupRate = Double.parseDouble(value); break;
+                case "--input": input = new File(value); break;
+                case "--arrays": arrays = new File(value); break;
+                default: usage("Unknown option " + arg);
+            }
+        }
+
+        AlertClassifier classifier = loadClassifier(arrays);
+
+        List<NotificationWorkload.Event> events;
+        if (input != null) {
+            events = NotificationWorkload.load(input);
+            System.out.println("Workload: " + events.size() + " notifications from " + input);
+        } else {
+            NotificationWorkload.Mix mix = mixSpec != null
+                ? NotificationWorkload.Mix.parse(mixSpec) : new NotificationWorkload.Mix();
+            if (dupRate != null) {
+                mix.duplicateRate = dupRate;
+            }
+            events = NotificationWorkload.synthetic(count, mix, seed);
+            System.out.println("Workload: " + events.size() + " synthetic notifications (" + mix + ")");
+        }
+
+        if (warmup > 0) {
+            // 预热用独立的管线和缓存，不影响正式统计
+            List<NotificationWorkload.Event> warmupEvents =
+                NotificationWorkload.synthetic(warmup, new NotificationWorkload.Mix(), seed + 1);
+            new Run(classifier, warmupEvents).execute(0);
+        }
+
+        DeliveryRaceStats.get().reset();
+        PowerStats.get().reset();
+        Run run = new Run(classifier, events);
+        run.execute(rate);
+        long merged = run.report(System.out, rate);
+        if (merged > 0) {
+            // 不同的触发被当成副本，主路径丢失时这次报警就没了
+            System.out.println("FAIL: " + merged + " distinct alerts merged by content fingerprint");
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Options: --rate N (per second, 0 = unthrottled) --count N --warmup N --seed N"
+            + " --mix tv=10,email-alert=10,email=25,lookalike=5,chat=50,mirror=0.2,lost=0.1 --dup 0.05"
+            + " --input captured.tsv --arrays " + DEFAULT_ARRAYS);
+        System.exit(2);
+    }
+
+    /** 从 Android 资源文件里读分类规则 */
+    static AlertClassifier loadClassifier(File arrays) throws Exception {
+        if (!arrays.isFile()) {
+            throw new IllegalArgumentException("Classifier rules not found: " + arrays.getAbsolutePath()
+                + " (run from the project root or pass --arrays)");
+        }
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(arrays);
+        return new AlertClassifier(
+            stringArray(document, "alert_app_package_fragments"),
+            stringArray(document, "alert_content_packages"),
+            stringArray(document, "alert_keywords"));
+    }
+
+    private static String[] stringArray(Document document, String name) {
+        NodeList arrays = document.getElementsByTagName("string-array");
+        for (int i = 0; i < arrays.getLength(); i++) {
+            Element array = (Element) arrays.item(i);
+            if (!name.equals(array.getAttribute("name"))) {
+                continue;
+            }
+            NodeList items = array.getElementsByTagName("item");
+            String[] values = new String[items.getLength()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = items.item(j).getTextContent().trim();
+            }
+            return values;
+        }
+        throw new IllegalArgumentException("Missing string-array " + name);
+    }
+
+    /** 一次回放：自己的去重缓存、管线和延迟统计 */
+    private static final class Run implements AlertPipeline.Sink {
+        private final List<NotificationWorkload.Event> events;
+        private final LatencyStats latency = new LatencyStats();
+        private final AlertPipeline pipeline = new AlertPipeline(this);
+        private final NotificationIngest ingest;
+        private final AtomicLong sunk = new AtomicLong();
+
+        private long falsePositives;
+        private long falseNegatives;
+        private long duplicatesSent;
+        private long duplicatesCaught;
+        /** 不是重发却被当作重复丢掉的 */
+        private long wronglySuppressed;
+        /** 通过分类和冷却去重、进了管线的另一路径副本 */
+        private long mirrorsSubmitted;
+        // 合成流里每次触发的内容都不同（代码会重复，价格不会）：内容 → 是否送达，预先建好，分发线程上只查不分配
+        private final Map<String, AtomicBoolean> firstCopies = new HashMap<>();
+        private final List<String> submittedFirstCopies = new ArrayList<>();
+
+        private long elapsedNanos;
+        private long drainNanos;
+        private long maxBehindNanos;
+        private long allocatedBytes = -1;
+        private long gcCount;
+        private long gcMillis;
+
+        Run(AlertClassifier classifier, List<NotificationWorkload.Event> events) {
+            this.events = events;
+            for (NotificationWorkload.Event event : events) {
+                if (event.expectedAlert && !event.duplicate && !event.mirror) {
+                    firstCopies.put(event.text, new AtomicBoolean());
+                }
+            }
+            this.ingest = new NotificationIngest(classifier,
+                new ExpiringDedupeCache(NOTIFICATION_COOLDOWN, MAX_TRACKED_NOTIFICATIONS), pipeline);
+        }
+
+        @Override
+        public void onAlert(AlertPipeline.Source source, String origin, String title, String message,
+                            AlertPayload payload, AlertTrace trace) {
+            // 代替 AlertManager：排期和出声都视为立即完成，只量管线本身
+            trace.mark(AlertTrace.Stage.SCHEDULED);
+            trace.mark(AlertTrace.Stage.AUDIO_STARTED);
+            latency.record(trace);
+            AtomicBoolean delivered = firstCopies.get(message);
+            if (delivered != null) {
+                delivered.set(true);
+            }
+            sunk.incrementAndGet();
+        }
+
+        @Override
+        public void onError(String message, RuntimeException e) {
+            System.err.println(message);
+            e.printStackTrace(System.err);
+        }
+
+        void execute(int rate) throws InterruptedException {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long[] gcBefore = gcTotals();
+            long allocatedBefore = allocatedBytes(threads);
+
+            long intervalNanos = rate > 0 ? 1000000000L / rate : 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < events.size(); i++) {
+                if (intervalNanos > 0) {
+                    long due = start + i * intervalNanos;
+                    long behind = pace(due);
+                    if (behind > maxBehindNanos) {
+                        maxBehindNanos = behind;
+                    }
+                }
+                NotificationWorkload.Event event = events.get(i);
+                account(event, ingest.onNotification(event.packageName, event.key, event.title, event.text, 0));
+            }
+            long submittedAt = System.nanoTime();
+            elapsedNanos = submittedAt - start;
+
+            // 等分发线程处理完所有已提交的警报
+            long deadline = submittedAt + DRAIN_TIMEOUT_MS * 1000000L;
+            AlertPipeline.Source source = AlertPipeline.Source.LISTENER;
+            while (pipeline.getDeliveredCount(source) + pipeline.getDuplicateCount(source)
+                    < pipeline.getIngestedCount(source) || sunk.get() < pipeline.getDeliveredCount(source)) {
+                if (System.nanoTime() > deadline) {
+                    System.err.println("Pipeline did not drain within " + DRAIN_TIMEOUT_MS + " ms: " + pipeline);
+                    break;
+                }
+                Thread.sleep(1);
+            }
+            drainNanos = System.nanoTime() - submittedAt;
+
+            long allocatedAfter = allocatedBytes(threads);
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                allocatedBytes = allocatedAfter - allocatedBefore;
+            }
+            long[] gcAfter = gcTotals();
+            gcCount = gcAfter[0] - gcBefore[0];
+            gcMillis = gcAfter[1] - gcBefore[1];
+            pipeline.shutdown();
+        }
+
+        /** 等到 due，返回落后了多少纳秒；离得远时 park，最后一小段自旋 */
+        private static long pace(long due) {
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                long remaining = due - now;
+                if (remaining > 200000) {
+                    LockSupport.parkNanos(remaining - 100000);
+                } else {
+                    Thread.yield();
+                }
+            }
+            return now - due;
+        }
+
+        private void account(NotificationWorkload.Event event, NotificationIngest.Result result) {
+            boolean classified = result != NotificationIngest.Result.IGNORED;
+            if (classified && !event.expectedAlert) {
+                falsePositives++;
+            } else if (!classified && event.expectedAlert) {
+                falseNegatives++;
+            }
+            if (event.duplicate) {
+                duplicatesSent++;
+                if (result == NotificationIngest.Result.DUPLICATE) {
+                    duplicatesCaught++;
+                }
+            } else if (result == NotificationIngest.Result.DUPLICATE) {
+                wronglySuppressed++;
+            }
+            if (event.mirror && result == NotificationIngest.Result.SUBMITTED) {
+                mirrorsSubmitted++;
+            } else if (result == NotificationIngest.Result.SUBMITTED && firstCopies.containsKey(event.text)) {
+                submittedFirstCopies.add(event.text);
+            }
+        }
+
+        /** 所有线程（包括分发线程）累计分配的字节数，JVM 不支持时为 -1 */
+        private static long allocatedBytes(ThreadMXBean threads) {
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+            if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) {
+                return -1;
+            }
+            long total = 0;
+            for (long bytes : sun.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                if (bytes > 0) {
+                    total += bytes;
+                }
+            }
+            return total;
+        }
+
+        private static long[] gcTotals() {
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            return new long[] {count, millis};
+        }
+
+        /** @return 被错误合并的不同警报数，应该为 0 */
+        long report(PrintStream out, int rate) {
+            int n = events.size();
+            double seconds = elapsedNanos / 1e9;
+            out.printf(Locale.US, "Submitted %d notifications in %.3f s (%.0f/s, target %s), drained in %.1f ms%n",
+                n, seconds, n / seconds, rate > 0 ? rate + "/s" : "unthrottled", drainNanos / 1e6);
+            if (rate > 0) {
+                out.printf(Locale.US, "Pacing: max %.2f ms behind schedule%n", maxBehindNanos / 1e6);
+            }
+            out.println("Ingest: " + ingest);
+            out.println("Pipeline: " + pipeline);
+
+            long expected = 0;
+            for (NotificationWorkload.Event event : events) {
+                if (event.expectedAlert) {
+                    expected++;
+                }
+            }
+            out.printf(Locale.US, "Classifier: %d false positives (%.2f%% of %d non-alerts), "
+                    + "%d false negatives (%.2f%% of %d alerts)%n",
+                falsePositives, percent(falsePositives, n - expected), n - expected,
+                falseNegatives, percent(falseNegatives, expected), expected);
+            out.printf(Locale.US, "Dedupe: %d/%d resends caught, %d first deliveries wrongly suppressed%n",
+                duplicatesCaught, duplicatesSent, wronglySuppressed);
+            // 第一份都送达了，指纹去重掉的就都是副本（或分类器误报之间的合并）
+            long merged = 0;
+            for (String text : submittedFirstCopies) {
+                if (!firstCopies.get(text).get()) {
+                    merged++;
+                }
+            }
+            long crossCaught = pipeline.getCrossSourceDuplicateCount(AlertPipeline.Source.LISTENER);
+            out.printf(Locale.US, "Cross-source: %d duplicates by content (%d copies from a second path sent), "
+                    + "%d distinct alerts wrongly merged%n", crossCaught, mirrorsSubmitted, merged);
+            for (String line : DeliveryRaceStats.get().summary().split("\n")) {
+                out.println("  " + line);
+            }
+
+            if (allocatedBytes >= 0) {
+                out.printf(Locale.US, "Allocation: %.0f bytes/notification, %.1f MB/s%n",
+                    (double) allocatedBytes / n, allocatedBytes / 1048576.0 / seconds);
+            }
+            out.printf(Locale.US, "GC: %d collections, %d ms%n", gcCount, gcMillis);
+            // 原文去重之后的每条警报都要解析（按指纹去重在解析之后）
+            AlertPipeline.Source listener = AlertPipeline.Source.LISTENER;
+            long parsed = pipeline.getIngestedCount(listener) - pipeline.getDuplicateCount(listener)
+                + pipeline.getCrossSourceDuplicateCount(listener);
+            PowerStats power = PowerStats.get();
+            out.printf(Locale.US, "CPU (PowerStats): classify %.2f us/notification, parse %.2f us/alert%n",
+                power.getWorkNanos(PowerStats.Work.CLASSIFY) / 1000.0 / n,
+                power.getWorkNanos(PowerStats.Work.PARSE) / 1000.0 / Math.max(1, parsed));
+
+            out.println("Latency (LISTENER, excludes AlertManager scheduling and audio):");
+            for (LatencyStats.Segment segment : LatencyStats.Segment.values()) {
+                LatencyHistogram h = latency.getHistogram(AlertPipeline.Source.LISTENER, segment);
+                if (h.getCount() == 0) {
+                    continue;
+                }
+                out.println(String.format(Locale.US, "  %-24s n=%-8d p50 %-8s p99 %-8s p99.9 %-8s max %s",
+                    segment, h.getCount(),
+                    LatencyStats.formatMicros(h.getValueAtPercentile(50)),
+                    LatencyStats.formatMicros(h.getValueAtPercentile(99)),
+                    LatencyStats.formatMicros(h.getValueAtPercentile(99.9)),
+                    LatencyStats.formatMicros(h.getMax())));
+            }
+            return merged;
+        }
+
+        private static double percent(long part, long whole) {
+            return whole == 0 ? 0 : part * 100.0 / whole;
+        }
+    }
+}
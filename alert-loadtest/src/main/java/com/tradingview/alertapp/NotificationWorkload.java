@@ -0,0 +1,240 @@
+package com.tradingview.alertapp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 回放用的通知流：合成的聊天/邮件/TradingView 混合，或者从抓取文件读入。
+ * 每条通知都带着"应不应该报警"的标注，用来统计误报和漏报。
+ *
+ * 抓取文件每行一条，制表符分隔：expected(1/0) package title text，# 开头的行忽略。
+ */
+final class NotificationWorkload {
+
+    static final class Event {
+        final String packageName;
+        final String key;
+        final String title;
+        final String text;
+        /** 标注：应该报警 */
+        final boolean expectedAlert;
+        /** 重发的同一条通知（同一个 key），应该被去重 */
+        final boolean duplicate;
+        /** 同一次触发从另一条路径（应用通知/邮件）送达的副本，应该被内容指纹去重 */
+        final boolean mirror;
+
+        Event(String packageName, String key, String title, String text, boolean expectedAlert, boolean duplicate) {
+            this(packageName, key, title, text, expectedAlert, duplicate, false);
+        }
+
+        Event(String packageName, String key, String title, String text, boolean expectedAlert, boolean duplicate,
+              boolean mirror) {
+            this.packageName = packageName;
+            this.key = key;
+            this.title = title;
+            this.text = text;
+            this.expectedAlert = expectedAlert;
+            this.duplicate = duplicate;
+            this.mirror = mirror;
+        }
+    }
+
+    /** 合成流的组成比例（相对权重） */
+    static final class Mix {
+        int tradingView = 10;
+        int emailAlert = 10;
+        int email = 25;
+        /** 邮件里提到 alert/btc 等关键词但不是 TradingView 警报（分类器的误报来源） */
+        int emailLookalike = 5;
+        int chat = 50;
+        /** 重发比例（0~1），只重发警报类通知 */
+        double duplicateRate = 0.05;
+        /** 警报同时从另一条路径送达的比例（0~1），副本在之后几十条通知内到达 */
+        double mirrorRate = 0.2;
+        /** 有副本的警报里主路径丢失、只从另一条路径送达的比例（0~1），这一份必须报警 */
+        double lostRate = 0.1;
+
+        static Mix parse(String spec) {
+            Mix mix = new Mix();
+            for (String part : spec.split(",")) {
+                String[] kv = part.split("=");
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Invalid mix entry: " + part);
+                }
+                String name = kv[0].trim();
+                String value = kv[1].trim();
+                switch (name) {
+                    case "tv": mix.tradingView = Integer.parseInt(value); break;
+                    case "email-alert": mix.emailAlert = Integer.parseInt(value); break;
+                    case "email": mix.email = Integer.parseInt(value); break;
+                    case "lookalike": mix.emailLookalike = Integer.parseInt(value); break;
+                    case "chat": mix.chat = Integer.parseInt(value); break;
+                    case "dup": mix.duplicateRate = Double.parseDouble(value); break;
+                    case "mirror": mix.mirrorRate = Double.parseDouble(value); break;
+                    case "lost": mix.lostRate = Double.parseDouble(value); break;
+                    default: throw new IllegalArgumentException("Unknown mix entry: " + name);
+                }
+            }
+            return mix;
+        }
+
+        @Override
+        public String toString() {
+            return "tv=" + tradingView + ",email-alert=" + emailAlert + ",email=" + email
+                + ",lookalike=" + emailLookalike + ",chat=" + chat + ",dup=" + duplicateRate
+                + ",mirror=" + mirrorRate + ",lost=" + lostRate;
+        }
+    }
+
+    private static final String TRADINGVIEW = "com.tradingview.tradingviewapp";
+    private static final String[] MAIL = {
+        "com.google.android.gm", "com.microsoft.office.outlook", "com.tencent.androidqqmail"
+    };
+    private static final String[] CHAT = {
+        "com.whatsapp", "com.tencent.mm", "org.telegram.messenger", "com.android.mms"
+    };
+    // 代码在几次触发之间重复使用（同一个品种的几个价位），价格每次不同，内容指纹不能把它们合并
+    private static final int TICKERS = 8;
+    private static final String[] EXCHANGES = {
+        "BINANCE", "NASDAQ", "NYSE", "OANDA", "CME_MINI"
+    };
+    private static final String[] CONDITIONS = {
+        "Crossing", "Crossing Up", "Crossing Down", "Greater Than", "Less Than", "Moving Up %"
+    };
+    private static final String[] CHAT_LINES = {
+        "See you at 7?", "Did you buy more btc today lol", "Sent you the photos", "Call me when you're free",
+        "明天一起吃饭吗", "ok 👍", "The meeting moved to Thursday"
+    };
+    private static final String[] MAIL_SUBJECTS = {
+        "Your weekly summary", "Invoice #4821", "Meeting notes", "Password changed", "Shipping update"
+    };
+    private static final String[] LOOKALIKE_SUBJECTS = {
+        "Security alert for your account", "ETH staking rewards are here", "Price alert: flights to Tokyo",
+        "USDT promotion ends soon", "提醒：会员即将到期"
+    };
+
+    private NotificationWorkload() {
+    }
+
+    static List<Event> synthetic(int count, Mix mix, long seed) {
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>(count);
+        List<Event> recentAlerts = new ArrayList<>();
+        int total = mix.tradingView + mix.emailAlert + mix.email + mix.emailLookalike + mix.chat;
+        if (total <= 0) {
+            throw new IllegalArgumentException("Empty mix");
+        }
+
+        List<Event> pendingMirrors = new ArrayList<>();
+        List<Integer> mirrorDue = new ArrayList<>();
+
+        for (int i = 0; events.size() < count; i++) {
+            if (!mirrorDue.isEmpty() && mirrorDue.get(0) <= i) {
+                mirrorDue.remove(0);
+                events.add(pendingMirrors.remove(0));
+                continue;
+            }
+            if (!recentAlerts.isEmpty() && random.nextDouble() < mix.duplicateRate) {
+                Event original = recentAlerts.get(random.nextInt(recentAlerts.size()));
+                events.add(new Event(original.packageName, original.key, original.title, original.text,
+                    original.expectedAlert, true));
+                continue;
+            }
+
+            int pick = random.nextInt(total);
+            String symbol = EXCHANGES[random.nextInt(EXCHANGES.length)] + ":" + ticker(random.nextInt(TICKERS));
+            String condition = CONDITIONS[random.nextInt(CONDITIONS.length)];
+            // 整数部分由序号决定，每次触发的价格都不同
+            String price = (1000 + i) + "." + random.nextInt(100);
+            String mail = MAIL[random.nextInt(MAIL.length)];
+            Event appCopy = event(i, TRADINGVIEW, symbol, condition + " " + price, true);
+            Event mailCopy = event(i, mail, "TradingView Alert: " + symbol,
+                "Your alert on " + symbol + " was triggered: " + condition + " " + price, true);
+            Event event;
+            boolean fromApp = (pick -= mix.tradingView) < 0;
+            if (fromApp || (pick -= mix.emailAlert) < 0) {
+                event = fromApp ? appCopy : mailCopy;
+                if (random.nextDouble() < mix.mirrorRate) {
+                    Event other = fromApp ? mailCopy : appCopy;
+                    boolean lost = random.nextDouble() < mix.lostRate;
+                    // 主路径丢了：另一条路径的那份就是第一份
+                    pendingMirrors.add(lost ? other : mirror(other));
+                    mirrorDue.add(i + 5 + random.nextInt(60));
+                    if (lost) {
+                        continue;
+                    }
+                }
+            } else if ((pick -= mix.email) < 0) {
+                event = event(i, MAIL[random.nextInt(MAIL.length)], MAIL_SUBJECTS[random.nextInt(MAIL_SUBJECTS.length)],
+                    "Hello, please find the details below. Reference " + i, false);
+            } else if ((pick -= mix.emailLookalike) < 0) {
+                event = event(i, MAIL[random.nextInt(MAIL.length)],
+                    LOOKALIKE_SUBJECTS[random.nextInt(LOOKALIKE_SUBJECTS.length)],
+                    "Open the app to learn more. Reference " + i, false);
+            } else {
+                event = event(i, CHAT[random.nextInt(CHAT.length)], "Friend " + random.nextInt(50),
+                    CHAT_LINES[random.nextInt(CHAT_LINES.length)], false);
+            }
+            events.add(event);
+            if (event.expectedAlert) {
+                // 只在最近的几十条警报里挑重发，保证落在冷却期和缓存容量之内
+                if (recentAlerts.size() == 64) {
+                    recentAlerts.remove(0);
+                }
+                recentAlerts.add(event);
+            }
+        }
+        return events;
+    }
+
+    private static Event mirror(Event event) {
+        return new Event(event.packageName, event.key, event.title, event.text, true, false, true);
+    }
+
+    /** 由序号生成的字母代码：0 → A，25 → Z，26 → BA ... */
+    private static String ticker(int id) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('A' + id % 26));
+            id /= 26;
+        } while (id > 0);
+        return sb.reverse().toString();
+    }
+
+    private static Event event(int id, String packageName, String title, String text, boolean expected) {
+        // 和 StatusBarNotification.getKey() 相同的形状：userId|package|id|tag|uid
+        String key = "0|" + packageName + "|" + id + "|null|10" + (packageName.hashCode() & 0xfff);
+        return new Event(packageName, key, title, text, expected, false);
+    }
+
+    /** 读取抓取文件，重复的 key 标记为重发 */
+    static List<Event> load(File file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        java.util.Set<String> seen = new java.util.HashSet<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 4) {
+                    throw new IOException(file + ":" + lineNumber + ": expected 4 tab-separated fields");
+                }
+                String key = fields[1] + ":" + fields[2] + ":" + fields[3];
+                events.add(new Event(fields[1], null, fields[2], fields[3], "1".equals(fields[0]), !seen.add(key)));
+            }
+        }
+        return events;
+    }
+}
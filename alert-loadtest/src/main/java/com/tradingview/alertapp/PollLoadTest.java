@@ -0,0 +1,447 @@
+package com.tradingview.alertapp;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 让真实的轮询客户端（PollScheduler + AdaptivePollInterval + AlertPoller + PollCursor + AlertPipeline，
+ * 和 AlertPollingService 的接法相同）对着 {@link PollStandInServer} 跑一组故障场景，
+ * 检查送达延迟、重复和丢失的警报数，以及线程数和堆内存是否稳定。任何一项不达标时退出码为 1。
+ * 多端点的场景起几台共用同一份警报的替身服务器，各自注入故障，检查对冲和故障转移。
+ *
+ * 用法（在项目根目录）：
+ *   ./gradlew :alert-loadtest:pollTest
+ *   ./gradlew :alert-loadtest:pollTest --args="--scenario timeouts --duration 30"
+ *
+ * 为了在几十秒内跑完，轮询间隔按比例缩短（基准 200ms，警报后 50ms，退避上限 2s），超时 1s，
+ * 宕机端点的冷却从 250ms 起。
+ */
+public final class PollLoadTest {
+    private static final long POLL_FLOOR = 50;
+    private static final long POLL_BASE = 200;
+    private static final long POLL_CEILING = 2000;
+    private static final long BOOST_WINDOW = 1000;
+    private static final long QUIET_AFTER = 60000;
+    private static final int TIMEOUT = 1000;
+    // 宕机的端点第一次冷却的时间，按比例缩短（app 里是 5s），在运行时间内能看到恢复
+    private static final long DOWN_COOLDOWN = 250;
+    private static final long DRAIN_TIMEOUT_MS = 30000;
+    // 多出来的线程和堆的容忍度（HttpURLConnection 的 Keep-Alive-Timer 等 JDK 线程会按需出现）
+    private static final int THREAD_SLACK = 3;
+    private static final long HEAP_SLACK = 32L * 1024 * 1024;
+
+    /** 一个故障场景和它的通过条件 */
+    static final class Scenario {
+        final String name;
+        final PollStandInServer.Faults faults = PollStandInServer.Faults.none();
+        double rate = 20;
+        int backlog;
+        int pageSize = 500;
+        /** 端到端（服务器产生 → 交给管线下游）p99 的上限 */
+        long maxP99Ms;
+        /** 同一份警报的其他副本服务器，各自的故障；不为空时客户端按多端点轮询 */
+        final List<PollStandInServer.Faults> replicas = new ArrayList<>();
+        /**
+         * 第一台服务器在运行时间的中间三分之一停止监听（连接被拒绝），之后在同一个端口恢复；
+         * 要求客户端转给副本、把它判定为宕机，并在冷却后探测恢复
+         */
+        boolean outage;
+        /** 至少要有这么多次对冲 / 故障转移，证明场景真的走到了那条路径 */
+        long minHedged;
+        long minFailedOver;
+
+        Scenario(String name, long maxP99Ms) {
+            this.name = name;
+            this.maxP99Ms = maxP99Ms;
+        }
+    }
+
+    private PollLoadTest() {
+    }
+
+    static List<Scenario> scenarios() {
+        List<Scenario> list = new ArrayList<>();
+        list.add(new Scenario("baseline", 1000));
+
+        Scenario slow = new Scenario("slow", 2000);
+        slow.faults.latencyMs = 300;
+        slow.faults.jitterMs = 300;
+        list.add(slow);
+
+        // 挂起超过客户端的读超时
+        Scenario timeouts = new Scenario("timeouts", 6000);
+        timeouts.faults.hangRate = 0.1;
+        timeouts.faults.hangMs = 3 * TIMEOUT;
+        list.add(timeouts);
+
+        Scenario errors = new Scenario("errors", 6000);
+        errors.faults.errorRate = 0.3;
+        list.add(errors);
+
+        Scenario truncated = new Scenario("truncated", 4000);
+        truncated.faults.truncateRate = 0.3;
+        list.add(truncated);
+
+        // 积压的警报在开始时就产生了，延迟就是追上积压用的时间
+        Scenario backlog = new Scenario("backlog", 30000);
+        backlog.backlog = 50000;
+        list.add(backlog);
+
+        Scenario flood = new Scenario("flood", 2000);
+        flood.rate = 500;
+        list.add(flood);
+
+        Scenario flapping = new Scenario("flapping", 8000);
+        flapping.rate = 50;
+        flapping.faults.jitterMs = 200;
+        flapping.faults.hangRate = 0.05;
+        flapping.faults.hangMs = 3 * TIMEOUT;
+        flapping.faults.errorRate = 0.15;
+        flapping.faults.truncateRate = 0.15;
+        flapping.pageSize = 100;
+        list.add(flapping);
+
+        // 两台服务器都会随机挂起，对冲让尾延迟由没挂起的那台决定（对比 timeouts）；
+        // 两台在同一次轮询都挂起（1%）时仍要等一个读超时，上限留出这一次
+        Scenario hedged = new Scenario("hedged", TIMEOUT + 500);
+        hedged.faults.hangRate = 0.1;
+        hedged.faults.hangMs = 3 * TIMEOUT;
+        PollStandInServer.Faults hedgedReplica = PollStandInServer.Faults.none();
+        hedgedReplica.hangRate = 0.1;
+        hedgedReplica.hangMs = 3 * TIMEOUT;
+        hedged.replicas.add(hedgedReplica);
+        hedged.minHedged = 1;
+        list.add(hedged);
+
+        // 第一台重启期间由第二台接替，恢复后重新参与
+        Scenario failover = new Scenario("failover", 1500);
+        failover.outage = true;
+        failover.minFailedOver = 1;
+        // 备用端点慢一些，平时排在后面，宕机期间才接手
+        PollStandInServer.Faults backup = PollStandInServer.Faults.none();
+        backup.latencyMs = 20;
+        failover.replicas.add(backup);
+        list.add(failover);
+
+        // 一台慢、一台经常出错、一台正常：主端点应该落到正常的那台上
+        Scenario mixed = new Scenario("mixed", 1000);
+        mixed.faults.latencyMs = 300;
+        mixed.faults.jitterMs = 300;
+        PollStandInServer.Faults erroring = PollStandInServer.Faults.none();
+        erroring.errorRate = 0.5;
+        mixed.replicas.add(erroring);
+        mixed.replicas.add(PollStandInServer.Faults.none());
+        list.add(mixed);
+        return list;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String only = null;
+        int durationSeconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--scenario": only = value; break;
+                case "--duration": durationSeconds = Integer.parseInt(value); break;
+                default: usage("Unknown option " + arg);
+            }
+        }
+
+        int failed = 0;
+        int ran = 0;
+        for (Scenario scenario : scenarios()) {
+            if (only != null && !only.equals(scenario.name)) {
+                continue;
+            }
+            ran++;
+            Run run = new Run(scenario);
+            run.execute(durationSeconds * 1000L);
+            if (!run.report(System.out)) {
+                failed++;
+            }
+        }
+        if (ran == 0) {
+            usage("Unknown scenario " + only);
+        }
+        System.out.println(failed == 0 ? "All " + ran + " scenario(s) passed"
+            : failed + " of " + ran + " scenario(s) FAILED");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static void usage(String error) {
+        StringBuilder names = new StringBuilder();
+        for (Scenario scenario : scenarios()) {
+            names.append(names.length() == 0 ? "" : "|").append(scenario.name);
+        }
+        System.err.println(error);
+        System.err.println("Options: --scenario " + names + " --duration SECONDS");
+        System.exit(2);
+    }
+
+    /** 一个场景的一次运行：自己的服务器、游标、调度器、管线和统计 */
+    private static final class Run implements AlertPipeline.Sink {
+        private final Scenario scenario;
+        private final LatencyStats latency = new LatencyStats();
+        private final AtomicLong sunk = new AtomicLong();
+        private final AtomicLong malformed = new AtomicLong();
+        // 按 id 计数送达次数，超过容量时再扩（只在分发线程上写）
+        private volatile AtomicIntegerArray deliveries = new AtomicIntegerArray(1 << 16);
+
+        private PollStandInServer server;
+        private final List<PollStandInServer> replicas = new ArrayList<>();
+        private AlertPipeline pipeline;
+        private PollScheduler scheduler;
+        private AdaptivePollInterval interval;
+        private AlertPoller poller;
+
+        private int generated;
+        private int distinct;
+        private int duplicates;
+        private boolean drained;
+        private long drainMs;
+        private int threadsBefore;
+        private int threadsPeak;
+        private int threadsAfter;
+        private long heapBefore;
+        private long heapAfter;
+
+        Run(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        @Override
+        public void onAlert(AlertPipeline.Source source, String origin, String title, String message,
+                            AlertPayload payload, AlertTrace trace) {
+            // 代替 AlertManager：排期和出声都视为立即完成
+            trace.mark(AlertTrace.Stage.SCHEDULED);
+            trace.mark(AlertTrace.Stage.AUDIO_STARTED);
+            latency.record(trace);
+
+            int hash = title.lastIndexOf('#');
+            int id;
+            try {
+                id = hash < 0 ? -1 : Integer.parseInt(title.substring(hash + 1));
+            } catch (NumberFormatException e) {
+                id = -1;
+            }
+            if (id <= 0) {
+                malformed.incrementAndGet();
+            } else {
+                AtomicIntegerArray counts = deliveries;
+                if (id >= counts.length()) {
+                    AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(id + 1, counts.length() * 2));
+                    for (int i = 0; i < counts.length(); i++) {
+                        grown.set(i, counts.get(i));
+                    }
+                    deliveries = counts = grown;
+                }
+                counts.incrementAndGet(id);
+            }
+            sunk.incrementAndGet();
+        }
+
+        @Override
+        public void onError(String message, RuntimeException e) {
+            System.err.println(message);
+            e.printStackTrace(System.err);
+        }
+
+        void execute(long durationMs) throws Exception {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            heapBefore = usedHeapAfterGc(memory);
+            threadsBefore = threads.getThreadCount();
+
+            server = new PollStandInServer(0, scenario.faults, scenario.pageSize);
+            server.addBacklog(scenario.backlog);
+            server.start();
+            List<String> urls = new ArrayList<>();
+            urls.add(server.getPollUrl());
+            for (PollStandInServer.Faults faults : scenario.replicas) {
+                PollStandInServer replica = new PollStandInServer(0, faults, scenario.pageSize, server);
+                replica.start();
+                replicas.add(replica);
+                urls.add(replica.getPollUrl());
+            }
+
+            pipeline = new AlertPipeline(this);
+            final PollCursor cursor = new PollCursor(null, null, "");
+            poller = new AlertPoller(urls, cursor, TIMEOUT, TIMEOUT, DOWN_COOLDOWN);
+            // 和 AlertPollingService.handleAlert 相同：按 id 去重后提交给管线
+            final AlertJsonReader.AlertHandler handler = (id, subject, from, time) -> {
+                AlertTrace trace = AlertTrace.received(AlertPipeline.Source.POLLER, time);
+                if (!cursor.markProcessed(id)) {
+                    return;
+                }
+                trace.mark(AlertTrace.Stage.CLASSIFIED);
+                pipeline.submit(trace, null, subject, from);
+            };
+            interval = new AdaptivePollInterval(POLL_FLOOR, POLL_BASE, POLL_CEILING, BOOST_WINDOW, QUIET_AFTER);
+            scheduler = new PollScheduler("loadtest-" + scenario.name, () -> {
+                long next;
+                try {
+                    next = interval.onSuccess(poller.poll(handler));
+                } catch (Exception e) {
+                    scheduler.setInterval(interval.onFailure());
+                    throw e;
+                }
+                scheduler.setInterval(next);
+            }, POLL_BASE);
+
+            server.startGenerating(scenario.rate);
+            scheduler.start();
+            long start = System.currentTimeMillis();
+            long end = start + durationMs;
+            boolean suspended = false;
+            while (System.currentTimeMillis() < end) {
+                Thread.sleep(100);
+                threadsPeak = Math.max(threadsPeak, threads.getThreadCount());
+                if (scenario.outage) {
+                    long elapsed = System.currentTimeMillis() - start;
+                    boolean down = elapsed >= durationMs / 3 && elapsed < durationMs * 2 / 3;
+                    if (down != suspended) {
+                        if (down) {
+                            server.suspend();
+                        } else {
+                            server.resume();
+                        }
+                        suspended = down;
+                    }
+                }
+            }
+            server.stopGenerating();
+            generated = server.getAlertCount();
+
+            // 故障照常注入，等客户端追上所有已产生的警报（宕机场景还要等第一台探测恢复）
+            long drainStart = System.currentTimeMillis();
+            PollEndpoint first = poller.getEndpoints().get(0);
+            while (!(drained = sunk.get() >= generated && pipeline.getQueueDepth() == 0
+                    && !(scenario.outage && first.isDown()))) {
+                if (System.currentTimeMillis() - drainStart > DRAIN_TIMEOUT_MS) {
+                    break;
+                }
+                Thread.sleep(20);
+                threadsPeak = Math.max(threadsPeak, threads.getThreadCount());
+            }
+            drainMs = System.currentTimeMillis() - drainStart;
+
+            scheduler.shutdown();
+            poller.shutdown();
+            pipeline.shutdown();
+            server.stop();
+            for (PollStandInServer replica : replicas) {
+                replica.stop();
+            }
+
+            AtomicIntegerArray counts = deliveries;
+            for (int id = 1; id <= generated && id < counts.length(); id++) {
+                int n = counts.get(id);
+                if (n > 0) {
+                    distinct++;
+                }
+                if (n > 1) {
+                    duplicates += n - 1;
+                }
+            }
+
+            // 给已经关闭的线程一点时间退出
+            long settle = System.currentTimeMillis() + 2000;
+            do {
+                Thread.sleep(50);
+                threadsAfter = threads.getThreadCount();
+            } while (threadsAfter > threadsBefore + THREAD_SLACK && System.currentTimeMillis() < settle);
+            heapAfter = usedHeapAfterGc(memory);
+        }
+
+        private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+            System.gc();
+            Thread.sleep(100);
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+
+        /** @return 是否通过 */
+        boolean report(PrintStream out) {
+            LatencyHistogram e2e = latency.getHistogram(AlertPipeline.Source.POLLER, LatencyStats.Segment.END_TO_END);
+            long p99Ms = e2e.getValueAtPercentile(99) / 1000;
+            int lost = generated - distinct;
+            List<String> failures = new ArrayList<>();
+            if (lost > 0) {
+                failures.add(lost + " alert(s) lost");
+            }
+            if (duplicates > 0) {
+                failures.add(duplicates + " duplicate deliveries");
+            }
+            if (malformed.get() > 0) {
+                failures.add(malformed.get() + " unrecognized alerts");
+            }
+            if (!drained) {
+                failures.add("did not drain within " + DRAIN_TIMEOUT_MS + " ms");
+            }
+            if (p99Ms > scenario.maxP99Ms) {
+                failures.add("p99 " + p99Ms + "ms > " + scenario.maxP99Ms + "ms");
+            }
+            if (threadsAfter > threadsBefore + THREAD_SLACK) {
+                failures.add("threads " + threadsBefore + " -> " + threadsAfter);
+            }
+            if (heapAfter - heapBefore > HEAP_SLACK) {
+                failures.add(String.format(Locale.US, "heap grew %.1f MB", (heapAfter - heapBefore) / 1048576.0));
+            }
+            if (poller.getHedgedCount() < scenario.minHedged) {
+                failures.add("hedged " + poller.getHedgedCount() + " < " + scenario.minHedged);
+            }
+            if (poller.getFailedOverCount() < scenario.minFailedOver) {
+                failures.add("failed over " + poller.getFailedOverCount() + " < " + scenario.minFailedOver);
+            }
+            if (scenario.outage) {
+                PollEndpoint first = poller.getEndpoints().get(0);
+                if (first.getOutageCount() == 0) {
+                    failures.add("stopped endpoint never marked down");
+                } else if (first.isDown() || first.getProbeCount() == 0) {
+                    failures.add("stopped endpoint did not recover after " + first.getProbeCount() + " probe(s)");
+                }
+            }
+
+            out.println("== " + scenario.name + " (" + scenario.faults + ", " + scenario.rate + "/s"
+                + (scenario.backlog > 0 ? ", backlog " + scenario.backlog : "") + ", page " + scenario.pageSize
+                + (scenario.replicas.isEmpty() ? "" : ", " + (scenario.replicas.size() + 1) + " endpoints")
+                + (scenario.outage ? ", outage" : "") + ")");
+            out.println("  Server: " + server);
+            for (int i = 0; i < replicas.size(); i++) {
+                out.println("  Replica (" + scenario.replicas.get(i) + "): " + replicas.get(i));
+            }
+            out.println("  Client: " + scheduler + ", interval " + interval.getHistory().size() + " changes");
+            if (!replicas.isEmpty()) {
+                out.println("  Poller: " + poller);
+            }
+            for (PollEndpoint endpoint : poller.getEndpoints()) {
+                if (!replicas.isEmpty()) {
+                    out.println("  Endpoint: " + endpoint);
+                }
+                out.println("  Transport: " + endpoint.getTransport());
+            }
+            out.println("  Pipeline: " + pipeline);
+            out.printf(Locale.US, "  Delivered %d/%d distinct, %d lost, %d duplicate, drained in %d ms%n",
+                distinct, generated, lost, duplicates, drainMs);
+            out.printf(Locale.US, "  Latency n=%d p50 %s p99 %s max %s (limit p99 %dms)%n",
+                e2e.getCount(),
+                LatencyStats.formatMicros(e2e.getValueAtPercentile(50)),
+                LatencyStats.formatMicros(e2e.getValueAtPercentile(99)),
+                LatencyStats.formatMicros(e2e.getMax()), scenario.maxP99Ms);
+            out.printf(Locale.US, "  Threads %d -> peak %d -> %d, heap %.1f MB -> %.1f MB%n",
+                threadsBefore, threadsPeak, threadsAfter, heapBefore / 1048576.0, heapAfter / 1048576.0);
+            out.println(failures.isEmpty() ? "  PASS" : "  FAIL: " + String.join("; ", failures));
+            return failures.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.tradingview.alertapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 本地的 /poll 替身服务器，实现和真实服务器相同的增量协议（since / ack / ETag → 304），
+ * 并且可以注入故障：固定和随机延迟、挂起到客户端超时、5xx、截断的 JSON、大量积压和高速新警报。
+ *
+ * 每条警报的 time 字段是它在服务器上产生的时间（毫秒），客户端据此算出送达延迟。
+ * /events 一律回 404，客户端按没有推送的情况走轮询。
+ * 副本（传入另一台作为 primary 构造）和它共用同一份警报，各自注入故障，用来压测多端点的对冲和故障转移；
+ * {@link #suspend} / {@link #resume} 模拟一台服务器宕机后恢复。
+ *
+ * 单独运行时可以让手机上的 app 指向它（在 MainActivity 长按状态栏改地址）：
+ *   ./gradlew :alert-loadtest:pollServer --args="--port 8080 --rate 5 --error 0.1"
+ */
+public final class PollStandInServer {
+
+    /** 故障注入参数，运行中可以随时修改 */
+    static final class Faults {
+        /** 每个请求固定增加的延迟 */
+        volatile long latencyMs;
+        /** 在固定延迟上再加 [0, jitterMs) 的随机延迟 */
+        volatile long jitterMs;
+        /** 按这个概率挂起 hangMs 再回应（应超过客户端的读超时） */
+        volatile double hangRate;
+        volatile long hangMs = 10000;
+        /** 按这个概率回 503 */
+        volatile double errorRate;
+        /** 按这个概率只写出响应体的前一半就断开 */
+        volatile double truncateRate;
+
+        static Faults none() {
+            return new Faults();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "latency=%dms+%dms hang=%.2f/%dms error=%.2f truncate=%.2f",
+                latencyMs, jitterMs, hangRate, hangMs, errorRate, truncateRate);
+        }
+    }
+
+    // 更小的响应压缩了反而更大
+    private static final int GZIP_MIN_BYTES = 256;
+    private static final byte[] ERROR_BODY = "{\"error\":\"unavailable\"}".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // 响应头和响应体分两次写，连接复用时 Nagle 加上客户端的延迟确认会让响应体晚到 40ms；
+        // 真实服务器都关掉了 Nagle
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final String[] SYMBOLS = {
+        "BINANCE:BTCUSDT", "BINANCE:ETHUSDT", "NASDAQ:AAPL", "NYSE:TSLA", "OANDA:XAUUSD"
+    };
+
+    // suspend 之后重新绑定时换成新的实例，HttpServer 停了不能再启动
+    private volatile HttpServer server;
+    private final int port;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService generator;
+    final Faults faults;
+    private final int pageSize;
+
+    private final Alerts alerts;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedHangs = new AtomicLong();
+    private final AtomicLong injectedTruncations = new AtomicLong();
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong gzipped = new AtomicLong();
+    // 客户端地址（含端口）各不相同的就是不同的 TCP 连接，用来看客户端有没有复用连接
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param port     0 表示随机端口
+     * @param pageSize 每个响应最多带多少条警报，积压很多时客户端要连续轮询几次才能追上
+     */
+    PollStandInServer(int port, Faults faults, int pageSize) throws IOException {
+        this(port, faults, pageSize, new Alerts());
+    }
+
+    /**
+     * 另一台服务器的副本：共用 primary 的警报（id 相同），故障单独注入；
+     * 警报由 primary 产生，副本上不要调用 addBacklog / startGenerating
+     */
+    PollStandInServer(int port, Faults faults, int pageSize, PollStandInServer primary) throws IOException {
+        this(port, faults, pageSize, primary.alerts);
+    }
+
+    private PollStandInServer(int port, Faults faults, int pageSize, Alerts alerts) throws IOException {
+        this.alerts = alerts;
+        this.faults = faults;
+        this.pageSize = pageSize;
+        // 挂起的请求会占住处理线程，线程数要够多，不能让挂起拖慢其他请求
+        this.handlers = Executors.newFixedThreadPool(8, daemon("StandIn-http"));
+        this.generator = Executors.newSingleThreadScheduledExecutor(daemon("StandIn-generator"));
+        this.server = bind(port);
+        this.port = server.getAddress().getPort();
+    }
+
+    private HttpServer bind(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 64);
+        server.setExecutor(handlers);
+        server.createContext("/poll", this::handlePoll);
+        server.createContext("/events", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        return server;
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        generator.shutdownNow();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * 模拟宕机：关掉监听端口和所有连接，客户端连接被拒绝。警报照常产生（副本上能读到），
+     * {@link #resume} 之后在同一个端口上恢复
+     */
+    void suspend() {
+        server.stop(0);
+    }
+
+    void resume() throws IOException {
+        server = bind(port);
+        server.start();
+    }
+
+    String getPollUrl() {
+        return "http://127.0.0.1:" + port + "/poll";
+    }
+
+    /** 立即产生 count 条警报（模拟服务器重启前积压下来的） */
+    void addBacklog(int count) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            addAlert(now);
+        }
+    }
+
+    /** 以每秒 rate 条的速度持续产生新警报，直到 {@link #stopGenerating} */
+    void startGenerating(double rate) {
+        if (rate <= 0) {
+            return;
+        }
+        long periodNanos = (long) (1e9 / rate);
+        generator.scheduleAtFixedRate(() -> addAlert(System.currentTimeMillis()),
+            periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void stopGenerating() throws InterruptedException {
+        generator.shutdown();
+        generator.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void addAlert(long now) {
+        synchronized (alerts) {
+            int id = alerts.payloads.size() + 1;
+            String symbol = SYMBOLS[id % SYMBOLS.length];
+            // subject 带上 id，保证每条警报的内容都不同，不会被管线按内容去重
+            alerts.payloads.add("{\"id\":" + id + ",\"subject\":\"TradingView Alert: " + symbol + " #" + id
+                + "\",\"from\":\"noreply@tradingview.com\",\"time\":" + now + "}");
+            if (id > alerts.createdAt.length) {
+                alerts.createdAt = Arrays.copyOf(alerts.createdAt, alerts.createdAt.length * 2);
+            }
+            alerts.createdAt[id - 1] = now;
+        }
+    }
+
+    int getAlertCount() {
+        synchronized (alerts) {
+            return alerts.payloads.size();
+        }
+    }
+
+    /** id 从 1 开始 */
+    long getCreatedAt(int id) {
+        synchronized (alerts) {
+            return alerts.createdAt[id - 1];
+        }
+    }
+
+    private void handlePoll(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress());
+            // 比 HttpServer 的空闲超时（30 秒）短，客户端不会拿到已经被这边关掉的连接
+            exchange.getResponseHeaders().set("Keep-Alive", "timeout=20");
+            String query = exchange.getRequestURI().getRawQuery();
+            int since = intParam(query, "since");
+            String ack = param(query, "ack");
+            if (ack != null) {
+                acked.addAndGet(ack.split(",").length);
+            }
+
+            Faults f = faults;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = f.latencyMs + (f.jitterMs > 0 ? random.nextLong(f.jitterMs) : 0);
+            if (f.hangRate > 0 && random.nextDouble() < f.hangRate) {
+                injectedHangs.incrementAndGet();
+                delay += f.hangMs;
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (f.errorRate > 0 && random.nextDouble() < f.errorRate) {
+                injectedErrors.incrementAndGet();
+                // 和真实服务器一样带一个响应体：JDK 的客户端遇到没有响应体的错误响应不会复用连接
+                exchange.sendResponseHeaders(503, ERROR_BODY.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(ERROR_BODY);
+                }
+                return;
+            }
+
+            StringBuilder body = new StringBuilder();
+            int last;
+            synchronized (alerts) {
+                List<String> payloads = alerts.payloads;
+                int end = Math.min(payloads.size(), since + pageSize);
+                body.append("{\"count\":").append(Math.max(0, end - since)).append(",\"alerts\":[");
+                for (int i = since; i < end; i++) {
+                    if (i > since) {
+                        body.append(',');
+                    }
+                    body.append(payloads.get(i));
+                }
+                body.append("]}");
+                last = Math.max(since, end);
+            }
+
+            String etag = "\"" + last + "\"";
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (last == since && etag.equals(ifNoneMatch)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (bytes.length >= GZIP_MIN_BYTES && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                bytes = gzip(bytes);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                gzipped.incrementAndGet();
+            }
+            if (f.truncateRate > 0 && last > since && random.nextDouble() < f.truncateRate) {
+                // 声明完整长度但只写一半就断开，客户端读到的是半截 JSON（或半截 gzip）
+                injectedTruncations.incrementAndGet();
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes, 0, bytes.length / 2);
+                out.flush();
+                bytesSent.addAndGet(bytes.length / 2);
+                return;
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+            bytesSent.addAndGet(bytes.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** 警报列表，几台替身服务器（同一份警报的副本）可以共用；用它自己做锁 */
+    private static final class Alerts {
+        // 下标 i 是 id = i + 1 的警报；只追加，读的一方按 since 取尾部
+        final List<String> payloads = new ArrayList<>();
+        long[] createdAt = new long[1024];
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static int intParam(String query, String name) {
+        String value = param(query, name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String param(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String part : query.split("&")) {
+            int eq = part.indexOf('=');
+            if (eq > 0 && part.substring(0, eq).equals(name)) {
+                try {
+                    return URLDecoder.decode(part.substring(eq + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        final AtomicLong counter = new AtomicLong();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "PollStandInServer{alerts=" + getAlertCount()
+            + ", requests=" + requests.get()
+            + ", notModified=" + notModified.get()
+            + ", errors=" + injectedErrors.get()
+            + ", hangs=" + injectedHangs.get()
+            + ", truncated=" + injectedTruncations.get()
+            + ", acked=" + acked.get()
+            + ", bytes=" + bytesSent.get()
+            + ", gzip=" + gzipped.get()
+            + ", connections=" + connections.size() + "}";
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8080;
+        int page = 500;
+        int backlog = 0;
+        double rate = 1;
+        Faults faults = Faults.none();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--port": port = Integer.parseInt(value); break;
+                case "--page": page = Integer.parseInt(value); break;
+                case "--backlog": backlog = Integer.parseInt(value); break;
+                case "--rate": rate = Double.parseDouble(value); break;
+                case "--latency": faults.latencyMs = Long.parseLong(value); break;
+                case "--jitter": faults.jitterMs = Long.parseLong(value); break;
+                case "--hang": faults.hangRate = Double.parseDouble(value); break;
+                case "--hang-ms": faults.hangMs = Long.parseLong(value); break;
+                case "--error": faults.errorRate = Double.parseDouble(value); break;
+                case "--truncate": faults.truncateRate = Double.parseDouble(value); break;
+                default: usage("Unknown option " + arg);
+            }
+        }
+
+        PollStandInServer server = new PollStandInServer(port, faults, page);
+        server.addBacklog(backlog);
+        server.start();
+        server.startGenerating(rate);
+        System.out.println("Serving " + server.getPollUrl().replace("127.0.0.1", "<this-host>")
+            + " (" + faults + ", " + rate + " alerts/s)");
+        while (true) {
+            Thread.sleep(10000);
+            System.out.println(server);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Options: --port 8080 --page 500 --backlog N --rate N (alerts/s)"
+            + " --latency MS --jitter MS --hang P --hang-ms MS --error P --truncate P");
+        System.exit(2);
+    }
+}
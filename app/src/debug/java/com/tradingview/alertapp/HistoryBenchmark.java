@@ -0,0 +1,100 @@
+package com.tradingview.alertapp;
+
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 在设备上测量历史库的写入吞吐和分页查询延迟。
+ *
+ * 使用独立的数据库文件，不碰真实历史，结束后删除。在后台线程上调用。
+ * 只在 debug 构建里，由 {@link HistoryBenchmarkActivity} 启动。
+ */
+final class HistoryBenchmark {
+    private static final String DB_NAME = "alert_history_bench.db";
+    private static final int QUERY_RUNS = 200;
+    private static final int PAGE_SIZE = 50;
+
+    private static final String[] PACKAGES = {
+        "com.tradingview.tradingviewapp", "com.google.android.gm", "com.microsoft.office.outlook",
+        "com.tencent.androidqqmail", null
+    };
+
+    private HistoryBenchmark() {
+    }
+
+    static String run(Context context, int records) {
+        context.deleteDatabase(DB_NAME);
+        AlertHistoryStore store = new AlertHistoryStore(context, DB_NAME);
+        StringBuilder report = new StringBuilder();
+        try {
+            Random random = new Random(42);
+            String[] symbols = new String[500];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = "BINANCE:SYM" + i + "USDT";
+            }
+            String[] tickers = new String[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                tickers[i] = AlertHistoryStore.tickerOf(symbols[i]);
+            }
+
+            // 写入：和正式路径一样入队，再按批次刷入
+            long time = System.currentTimeMillis() - records * 1000L;
+            long start = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                String symbol = symbols[random.nextInt(symbols.length)];
+                time += random.nextInt(2000);
+                store.record(time, "LISTENER", PACKAGES[random.nextInt(PACKAGES.length)], symbol,
+                    "TradingView Alert", symbol + " crossing " + random.nextInt(100000), "critical");
+                if ((i & 1023) == 1023) {
+                    store.flush();
+                }
+            }
+            store.flush();
+            long insertNanos = System.nanoTime() - start;
+            report.append(String.format("Insert: %d records in %d ms (%.0f records/s)\n",
+                records, insertNanos / 1000000, records * 1e9 / insertNanos));
+
+            // 查询：第一页、翻到第 20 页、按包名、按品种、按不带交易所的代码
+            measure(report, "First page", store, null, null, 0, random, symbols);
+            measure(report, "Page 20", store, null, null, 19, random, symbols);
+            measure(report, "By package", store, PACKAGES[0], null, 0, random, symbols);
+            measure(report, "By symbol", store, null, "", 0, random, symbols);
+            measure(report, "By symbol, page 5", store, null, "", 4, random, symbols);
+            measure(report, "By ticker", store, null, "", 0, random, tickers);
+        } finally {
+            store.close();
+            context.deleteDatabase(DB_NAME);
+        }
+        return report.toString();
+    }
+
+    /** symbol 传空串表示每次随机选一个品种 */
+    private static void measure(StringBuilder report, String label, AlertHistoryStore store,
+                                String packageName, String symbol, int skipPages,
+                                Random random, String[] symbols) {
+        long[] nanos = new long[QUERY_RUNS];
+        int rows = 0;
+        for (int run = 0; run < QUERY_RUNS; run++) {
+            String querySymbol = symbol != null && symbol.isEmpty()
+                ? symbols[random.nextInt(symbols.length)] : symbol;
+            AlertHistoryStore.Record after = null;
+            for (int page = 0; page < skipPages; page++) {
+                List<AlertHistoryStore.Record> skipped = store.queryPage(after, packageName, querySymbol, PAGE_SIZE);
+                if (skipped.isEmpty()) {
+                    break;
+                }
+                after = skipped.get(skipped.size() - 1);
+            }
+            long start = System.nanoTime();
+            rows += store.queryPage(after, packageName, querySymbol, PAGE_SIZE).size();
+            nanos[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        report.append(String.format("%s: p50 %.2f ms, p99 %.2f ms, max %.2f ms (%d rows/query)\n",
+            label, nanos[QUERY_RUNS / 2] / 1e6, nanos[QUERY_RUNS * 99 / 100] / 1e6,
+            nanos[QUERY_RUNS - 1] / 1e6, rows / QUERY_RUNS));
+    }
+}
@@ -0,0 +1,44 @@
+package com.tradingview.alertapp;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+/**
+ * 在设备上跑 {@link HistoryBenchmark}，结果显示在界面上并写到日志。只在 debug 构建里，没有入口，用 adb 启动：
+ *   adb shell am start -n com.tradingview.alertapp/.HistoryBenchmarkActivity --ei records 200000
+ *
+ * 在自己的线程上运行，不占用 MainActivity 翻历史用的线程。
+ */
+public class HistoryBenchmarkActivity extends Activity {
+    private static final String TAG = "HistoryBenchmark";
+    private static final String EXTRA_RECORDS = "records";
+    private static final int DEFAULT_RECORDS = 200000;
+
+    private TextView reportText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        reportText = new TextView(this);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        reportText.setPadding(padding, padding, padding, padding);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(reportText);
+        setContentView(scroll);
+
+        final int records = getIntent().getIntExtra(EXTRA_RECORDS, DEFAULT_RECORDS);
+        reportText.setText("Inserting " + records + " records into a scratch database...");
+        new Thread(() -> {
+            final String report = HistoryBenchmark.run(getApplicationContext(), records);
+            Log.i(TAG, report);
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    reportText.setText(report);
+                }
+            });
+        }, "HistoryBenchmark").start();
+    }
+}
@@ -0,0 +1,155 @@
+package com.tradingview.alertapp;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * 预热的报警音频：铃声 URI 只解析一次，MediaPlayer 提前 prepare 好并一直保留。
+ * 报警时只需要 seekTo(0) + start()，停止时 pause() 而不是 release()，
+ * 6 次重复都不再重新创建和解码。
+ *
+ * 不是线程安全的，只能在 AlertManager 的输出线程上使用（不在主线程上阻塞）。
+ */
+class AlarmAudioEngine {
+    private static final String TAG = "AlarmAudioEngine";
+
+    private final Context context;
+    private Uri alarmUri;
+    private MediaPlayer player;
+    private boolean prepared;
+
+    // 从触发到 start() 返回的耗时统计（毫秒）
+    private long startCount;
+    private long coldStartCount;
+    private long lastLatencyMs = -1;
+    private long minLatencyMs = Long.MAX_VALUE;
+    private long maxLatencyMs;
+    private long totalLatencyMs;
+
+    AlarmAudioEngine(Context context) {
+        this.context = context;
+    }
+
+    /** 解析铃声并准备好播放器；已经准备好时什么也不做 */
+    void prepare() {
+        if (prepared) {
+            return;
+        }
+        try {
+            if (alarmUri == null) {
+                alarmUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
+                if (alarmUri == null) {
+                    alarmUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
+                }
+            }
+
+            MediaPlayer mp = new MediaPlayer();
+            mp.setDataSource(context, alarmUri);
+
+            AudioAttributes audioAttributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_ALARM)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build();
+            mp.setAudioAttributes(audioAttributes);
+
+            mp.setLooping(true);
+            mp.setOnErrorListener((failed, what, extra) -> {
+                // 播放器进入错误状态后不能再用，下次报警时重新准备
+                Log.e(TAG, "MediaPlayer error " + what + "/" + extra + ", will re-prepare");
+                releasePlayer();
+                return true;
+            });
+            mp.prepare();
+
+            player = mp;
+            prepared = true;
+            Log.d(TAG, "Alarm sound prepared: " + alarmUri);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error preparing alarm sound", e);
+            releasePlayer();
+        }
+    }
+
+    /**
+     * 从头开始播放。
+     *
+     * @param triggerElapsedMs 触发时刻（SystemClock.elapsedRealtime），用于统计出声延迟
+     */
+    void start(long triggerElapsedMs) {
+        boolean cold = !prepared;
+        prepare();
+        if (!prepared) {
+            return;
+        }
+
+        if (player.isPlaying()) {
+            // 已经在响（另一条警报），不打断
+            return;
+        }
+        player.seekTo(0);
+        player.start();
+
+        long latency = SystemClock.elapsedRealtime() - triggerElapsedMs;
+        recordLatency(latency, cold);
+        Log.d(TAG, "Alarm sound started in " + latency + "ms" + (cold ? " (cold)" : ""));
+    }
+
+    void stop() {
+        if (prepared && player.isPlaying()) {
+            player.pause();
+            player.seekTo(0);
+            Log.d(TAG, "Alarm sound stopped");
+        }
+    }
+
+    boolean isPlaying() {
+        return prepared && player.isPlaying();
+    }
+
+    void release() {
+        releasePlayer();
+    }
+
+    private void releasePlayer() {
+        if (player != null) {
+            player.release();
+            player = null;
+        }
+        prepared = false;
+    }
+
+    private void recordLatency(long latencyMs, boolean cold) {
+        startCount++;
+        if (cold) {
+            coldStartCount++;
+        }
+        lastLatencyMs = latencyMs;
+        minLatencyMs = Math.min(minLatencyMs, latencyMs);
+        maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+        totalLatencyMs += latencyMs;
+    }
+
+    long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    @Override
+    public String toString() {
+        if (startCount == 0) {
+            return "AlarmAudioEngine{no starts}";
+        }
+        return "AlarmAudioEngine{starts=" + startCount
+            + ", cold=" + coldStartCount
+            + ", timeToAudio last/min/avg/max=" + lastLatencyMs
+            + "/" + minLatencyMs
+            + "/" + (totalLatencyMs / startCount)
+            + "/" + maxLatencyMs + "ms}";
+    }
+}
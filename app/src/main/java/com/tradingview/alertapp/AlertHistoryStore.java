@@ -0,0 +1,242 @@
+package com.tradingview.alertapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 警报历史：每条送达的警报都记一行，按时间、来源包名、品种、代码建索引。
+ *
+ * 写入不阻塞接收线程：record() 只是入队，写线程攒一批（最多等 BATCH_DELAY）
+ * 后在一个事务里用预编译语句写完。查询用 (time, _id) 做键集分页，
+ * 翻到第几页都只走索引的一段，不会随记录数变慢（OFFSET 分页会）。
+ */
+public class AlertHistoryStore extends SQLiteOpenHelper {
+    private static final String TAG = "AlertHistoryStore";
+    private static final String DB_NAME = "alert_history.db";
+    // 2：加了 ticker 列
+    private static final int DB_VERSION = 2;
+
+    private static final long BATCH_DELAY = 500;
+    private static final int BATCH_SIZE = 256;
+
+    private static final String INSERT_SQL = "INSERT INTO history"
+        + " (time, source, package, symbol, ticker, title, message, profile) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public static final class Record {
+        public final long id;
+        /** System.currentTimeMillis */
+        public final long time;
+        public final String source;
+        /** 发出通知的应用包名，轮询和推送来源为 null */
+        public final String packageName;
+        /** 从标题/内容里识别出的品种（如 BINANCE:BTCUSDT），识别不出时为 null */
+        public final String symbol;
+        /** symbol 去掉交易所的部分（如 BTCUSDT），识别不出时为 null */
+        public final String ticker;
+        public final String title;
+        public final String message;
+        public final String profile;
+
+        Record(long id, long time, String source, String packageName, String symbol, String ticker,
+               String title, String message, String profile) {
+            this.id = id;
+            this.time = time;
+            this.source = source;
+            this.packageName = packageName;
+            this.symbol = symbol;
+            this.ticker = ticker;
+            this.title = title;
+            this.message = message;
+            this.profile = profile;
+        }
+    }
+
+    private static AlertHistoryStore instance;
+
+    private final HandlerThread writerThread;
+    private final Handler writer;
+    private final ConcurrentLinkedQueue<Record> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Runnable flushTask = this::flush;
+
+    public static synchronized AlertHistoryStore get(Context context) {
+        if (instance == null) {
+            instance = new AlertHistoryStore(context.getApplicationContext(), DB_NAME);
+        }
+        return instance;
+    }
+
+    /** name 为数据库文件名，测量用的独立库传别的名字 */
+    AlertHistoryStore(Context context, String name) {
+        super(context, name, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+        writerThread = new HandlerThread("AlertHistory");
+        writerThread.start();
+        writer = new Handler(writerThread.getLooper());
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE history ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "time INTEGER NOT NULL, "
+            + "source TEXT NOT NULL, "
+            + "package TEXT, "
+            + "symbol TEXT, "
+            + "ticker TEXT, "
+            + "title TEXT, "
+            + "message TEXT, "
+            + "profile TEXT)");
+        // 索引都带上 time，按条件过滤后仍然可以直接按时间倒序分页
+        db.execSQL("CREATE INDEX history_time ON history (time)");
+        db.execSQL("CREATE INDEX history_package_time ON history (package, time)");
+        db.execSQL("CREATE INDEX history_symbol_time ON history (symbol, time)");
+        db.execSQL("CREATE INDEX history_ticker_time ON history (ticker, time)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // 已有的行从 symbol 里取出代码，和 tickerOf 一致
+            db.execSQL("ALTER TABLE history ADD COLUMN ticker TEXT");
+            db.execSQL("UPDATE history SET ticker = substr(symbol, instr(symbol, ':') + 1)"
+                + " WHERE symbol IS NOT NULL");
+            db.execSQL("CREATE INDEX history_ticker_time ON history (ticker, time)");
+        }
+    }
+
+    /** "BINANCE:BTCUSDT" → "BTCUSDT"，没有交易所时原样返回 */
+    static String tickerOf(String symbol) {
+        return symbol == null ? null : symbol.substring(symbol.indexOf(':') + 1);
+    }
+
+    /**
+     * 记录一条警报，可以从任意线程调用，不做任何 I/O。
+     */
+    public void record(long time, String source, String packageName, String symbol, String title,
+                       String message, String profile) {
+        pending.offer(new Record(0, time, source, packageName, symbol, tickerOf(symbol),
+            title, message, profile));
+        int n = queued.incrementAndGet();
+        if (n == 1) {
+            writer.postDelayed(flushTask, BATCH_DELAY);
+        } else if (n == BATCH_SIZE) {
+            writer.removeCallbacks(flushTask);
+            writer.post(flushTask);
+        }
+    }
+
+    /** 把排队的记录在一个事务里写完，返回写入条数；在写线程上调用，也可以同步调用 */
+    int flush() {
+        queued.set(0);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        int written = 0;
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement(INSERT_SQL);
+        db.beginTransaction();
+        try {
+            Record record;
+            while ((record = pending.poll()) != null) {
+                insert.bindLong(1, record.time);
+                insert.bindString(2, record.source);
+                bindNullable(insert, 3, record.packageName);
+                bindNullable(insert, 4, record.symbol);
+                bindNullable(insert, 5, record.ticker);
+                bindNullable(insert, 6, record.title);
+                bindNullable(insert, 7, record.message);
+                bindNullable(insert, 8, record.profile);
+                insert.executeInsert();
+                written++;
+            }
+            db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error writing alert history", e);
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        return written;
+    }
+
+    /** 写完排队的记录后关闭；共享实例随进程存在，不需要关闭 */
+    @Override
+    public synchronized void close() {
+        writer.removeCallbacks(flushTask);
+        writerThread.quitSafely();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        super.close();
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * 按时间倒序取一页。
+     *
+     * @param after       上一页的最后一条，第一页传 null
+     * @param packageName 只看这个包名，null 表示不限
+     * @param symbol      只看这个品种，null 表示不限；带交易所（BINANCE:BTCUSDT）时按 symbol 列精确匹配，
+     *                    只有代码（BTCUSDT）时按 ticker 列匹配，各交易所的都算。两种都走索引
+     */
+    public List<Record> queryPage(Record after, String packageName, String symbol, int limit) {
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        if (packageName != null) {
+            where.append("package = ?");
+            args.add(packageName);
+        }
+        if (symbol != null) {
+            // 不用 LIKE '%:X'：前导通配符走不了索引
+            where.append(where.length() > 0 ? " AND " : "")
+                .append(symbol.indexOf(':') >= 0 ? "symbol = ?" : "ticker = ?");
+            args.add(symbol);
+        }
+        if (after != null) {
+            // time <= ? 让 SQLite 把它当作索引范围的上界，OR 只在同一毫秒内区分先后
+            where.append(where.length() > 0 ? " AND " : "").append("time <= ? AND (time < ? OR _id < ?)");
+            args.add(Long.toString(after.time));
+            args.add(Long.toString(after.time));
+            args.add(Long.toString(after.id));
+        }
+
+        String sql = "SELECT _id, time, source, package, symbol, ticker, title, message, profile FROM history"
+            + (where.length() > 0 ? " WHERE " + where : "")
+            + " ORDER BY time DESC, _id DESC LIMIT " + limit;
+
+        List<Record> page = new ArrayList<>(limit);
+        Cursor cursor = getReadableDatabase().rawQuery(sql, args.toArray(new String[0]));
+        try {
+            while (cursor.moveToNext()) {
+                page.add(new Record(cursor.getLong(0), cursor.getLong(1), cursor.getString(2),
+                    cursor.getString(3), cursor.getString(4), cursor.getString(5),
+                    cursor.getString(6), cursor.getString(7), cursor.getString(8)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return page;
+    }
+}
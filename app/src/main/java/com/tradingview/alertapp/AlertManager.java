@@ -1,89 +1,392 @@
 package com.tradingview.alertapp;
 
+import android.app.AlarmManager;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.media.AudioAttributes;
-import android.media.MediaPlayer;
-import android.media.RingtoneManager;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.HandlerThread;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
+import android.util.SparseArray;
 
 import androidx.core.app.NotificationCompat;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AlertManager {
     private static final String TAG = "AlertManager";
     private static final String STOP_ALARM_ACTION = "com.tradingview.alertapp.STOP_ALARM";
-
-    // 报警配置
-    private static final long ALERT_DURATION = 180000; // 3分钟
-    private static final long REPEAT_INTERVAL = 600000; // 10分钟
-    private static final int MAX_REPEATS = 6; // 最多6次
+    private static final String TIMER_ACTION = "com.tradingview.alertapp.ALERT_TIMER";
+
+    // 突发合并：窗口内的警报共用一次响铃和一个分组通知
+    private static final long DEFAULT_COALESCE_WINDOW = 2000; // 2秒
+    // 系统对每个应用的通知频率有限制（约每秒5次），子通知按这个间隔逐个发出
+    private static final long CHILD_NOTIFICATION_SPACING = 250;
+    private static final int MAX_SUMMARY_LINES = 8;
+    private static final String GROUP_KEY = "com.tradingview.alertapp.ALERT_GROUP";
+
+    // 限流：同一个品种（和策略）最多连响 3 次，之后每分钟 1 次；
+    // 同一个来源最多连响 10 次，之后每 6 秒 1 次，挡住不停换品种的失控来源
+    private static final int RATE_KEY_BURST = 3;
+    private static final long RATE_KEY_REFILL = 60 * 1000;
+    private static final int RATE_SOURCE_BURST = 10;
+    private static final long RATE_SOURCE_REFILL = 6 * 1000;
+    private static final int RATE_MAX_KEYS = 4096;
+
+    // 警报日志：每秒最多 fsync 一次，超过 64KB 压缩，超过一天的警报不再恢复
+    private static final String JOURNAL_FILE = "alert-journal.log";
+    private static final long JOURNAL_SYNC_INTERVAL = 1000;
+    private static final long JOURNAL_COMPACT_THRESHOLD = 64 * 1024;
+    private static final long JOURNAL_MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    // 定时：50ms 精度的时间轮，4 层可覆盖约 9.7 天
+    private static final long TIMER_TICK = 50;
+    private static final int TIMER_LEVELS = 4;
+    // 比这更近的唤醒只用 Handler（这期间通常持有 WakeLock），更远的再用精确闹钟防止 Doze 推迟
+    private static final long EXACT_ALARM_THRESHOLD = 5000;
 
     private final Context context;
     private final Vibrator vibrator;
-    private MediaPlayer mediaPlayer;
-    private final Handler handler;
     private final NotificationManager notificationManager;
+
+    // 所有输出副作用（声音、振动、WakeLock、通知）和定时任务都串行在这个线程上，
+    // audioEngine / wakeLock 只在这个线程上访问
+    private final HandlerThread outputThread;
+    private final Handler output;
+    private final AlarmAudioEngine audioEngine;
     private PowerManager.WakeLock wakeLock;
 
-    // 跟踪每个警报的重复次数
-    private final Map<String, AlertInfo> activeAlerts = new HashMap<>();
+    // 所有警报的定时任务都挂在时间轮上（elapsedRealtime，深度睡眠时也在走），
+    // 输出线程上只保留一条唤醒消息，必要时再加一个精确闹钟
+    private final TimerWheel timers;
+    private final AlarmManager alarmManager;
+    private final Runnable timerTick = this::onTimerTick;
+    private long armedWakeup = Long.MAX_VALUE;
+    private PendingIntent timerAlarm;
+    // WakeLock 和当前振动波形各自覆盖到的时刻（uptimeMillis），短配置不截断长配置
+    private long wakeLockUntil;
+    private long vibratingUntil;
+    // WakeLock 记账：这一段从什么时候开始持有、为哪个配置持有、最晚到什么时候自动超时
+    private long wakeLockHeldSince;
+    private String wakeLockReason;
+    private long wakeLockExpiresAt;
+
+    // 输出配置（时长、重复计划、振动波形）启动时一次性构建，报警时只按名字取
+    private final AlertProfileRouter profileRouter;
+    private final Map<String, VibrationEffect> vibrationEffects = new HashMap<>();
+
+    // 每条送达的警报都记入历史，写入是异步批量的
+    private final AlertHistoryStore history;
+    // 从日志恢复的警报重新解析字段，只在输出线程上使用（新警报由管线解析）
+    private final AlertPayloadParser resumeParser = new AlertPayloadParser();
+
+    // 收到、响铃、停止都记下来，进程被杀后重启时恢复还没结束的警报
+    private final AlertJournal journal;
+    // 恢复在输出线程上做（要读整个文件），新警报写日志前等它完成
+    private final CountDownLatch journalRecovered = new CountDownLatch(1);
+
+    // 跟踪每个警报的状态和重复次数，任意线程都可以读写
+    private final ConcurrentHashMap<String, AlertInfo> activeAlerts = new ConcurrentHashMap<>();
     private final AtomicInteger notificationIdCounter = new AtomicInteger(1000);
 
+    // 只在管线分发线程上使用，换参数时整个替换
+    private volatile AlertRateLimiter rateLimiter = new AlertRateLimiter(
+        RATE_KEY_BURST, RATE_KEY_REFILL, RATE_SOURCE_BURST, RATE_SOURCE_REFILL, RATE_MAX_KEYS);
+
+    // 以下只在输出线程上访问
+    private final SparseArray<AlertBurst> bursts = new SparseArray<>();
+    // 每个配置各自的合并窗口：不同配置的警报响法不同，不能合并成一次响铃
+    private final Map<String, AlertBurst> openBursts = new HashMap<>();
+    private volatile long coalesceWindow = DEFAULT_COALESCE_WINDOW;
+
     private BroadcastReceiver stopAlarmReceiver;
 
-    private static class AlertInfo {
-        String title;
-        String message;
-        int repeatCount;
-        int notificationId;
-        Runnable repeatTask;
+    // 所有来源共用一个 AlertManager 和一条接收管线，避免多个 MediaPlayer 互相抢占
+    private static AlertManager instance;
+    private static int refCount = 0;
+    private final AlertPipeline pipeline;
+
+    /**
+     * 警报状态机：
+     * PENDING → SOUNDING → WAITING_REPEAT → SOUNDING → ... → EXPIRED
+     * 任意非终止状态都可以被停止按钮转到 STOPPED。
+     * 所有转换都是 CAS，停止和定时任务并发发生时只有一方生效。
+     */
+    enum AlertState {
+        PENDING, SOUNDING, WAITING_REPEAT, STOPPED, EXPIRED;
+
+        boolean isTerminal() {
+            return this == STOPPED || this == EXPIRED;
+        }
+    }
 
-        AlertInfo(String title, String message, int notificationId) {
+    private static class AlertInfo {
+        final String key;
+        final String title;
+        final String message;
+        final AlertPayload payload;
+        final AlertProfile profile;
+        // 延迟统计，从日志恢复的警报没有
+        final AlertTrace trace;
+        final int notificationId;
+        // 这个品种/来源上次响铃以来被限流压掉的警报数，显示在通知里
+        final int suppressed;
+        final long createdAt = SystemClock.elapsedRealtime();
+        final AtomicReference<AlertState> state = new AtomicReference<>(AlertState.PENDING);
+        // 只在输出线程上修改
+        AlertBurst burst;
+
+        AlertInfo(String key, String title, String message, AlertPayload payload, AlertProfile profile,
+                  AlertTrace trace, int notificationId, int suppressed) {
+            this.key = key;
             this.title = title;
             this.message = message;
-            this.repeatCount = 0;
+            this.payload = payload;
+            this.profile = profile;
+            this.trace = trace;
             this.notificationId = notificationId;
+            this.suppressed = suppressed;
+        }
+
+        boolean transition(AlertState from, AlertState to) {
+            return state.compareAndSet(from, to);
+        }
+
+        /** 从任意非终止状态转到 STOPPED；已经结束时返回 false */
+        boolean stop() {
+            while (true) {
+                AlertState current = state.get();
+                if (current.isTerminal()) {
+                    return false;
+                }
+                if (state.compareAndSet(current, AlertState.STOPPED)) {
+                    return true;
+                }
+            }
         }
     }
 
-    public AlertManager(Context context) {
+    /**
+     * 一次突发：同一个合并窗口内到达的警报。共用一次响铃、一套重复计划和一个汇总通知，
+     * 每条警报仍有自己的子通知和停止按钮。只在输出线程上访问。
+     */
+    private static class AlertBurst {
+        final int summaryId;
+        final AlertProfile profile;
+        final List<AlertInfo> members = new ArrayList<>();
+        // 窗口关闭前加入、子通知还没发出的警报
+        final List<AlertInfo> pendingChildren = new ArrayList<>();
+        int repeatCount;
+        // 当前这一轮开始的时间（System.currentTimeMillis），写进日志用于恢复
+        long roundStartedAt;
+        // 这个突发安排的定时任务，停止时逐个取消（每个 O(1)），不会影响别的突发
+        final List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+
+        AlertBurst(int summaryId, AlertProfile profile) {
+            this.summaryId = summaryId;
+            this.profile = profile;
+        }
+    }
+
+    private AlertManager(Context context) {
         this.context = context;
         this.vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
-        this.handler = new Handler(Looper.getMainLooper());
+        this.outputThread = new HandlerThread("AlertOutput");
+        this.outputThread.start();
+        this.output = new Handler(outputThread.getLooper());
+        this.audioEngine = new AlarmAudioEngine(context);
+        this.timers = new TimerWheel(TIMER_TICK, TIMER_LEVELS, SystemClock.elapsedRealtime());
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        // 提前准备好铃声，第一次报警不用等解码
+        output.post(audioEngine::prepare);
         this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.profileRouter = new AlertProfileRouter(
+            AlertProfile.defaults(),
+            context.getResources().getStringArray(R.array.alert_profile_rules),
+            context.getString(R.string.alert_default_profile));
+        compileVibrationEffects();
+
+        // 恢复要读整个日志文件，不放在调用方（主线程）上；新警报在 triggerAlert 里等恢复完成，
+        // 恢复的警报先进入输出线程，不会和新警报交错
+        this.journal = new AlertJournal(new File(context.getFilesDir(), JOURNAL_FILE),
+            JOURNAL_SYNC_INTERVAL, JOURNAL_COMPACT_THRESHOLD, JOURNAL_MAX_AGE);
+        output.post(() -> {
+            List<AlertJournal.Entry> recovered;
+            try {
+                recovered = recoverJournal();
+            } finally {
+                journalRecovered.countDown();
+            }
+            resumeAlerts(recovered);
+        });
+
+        this.history = AlertHistoryStore.get(context);
+        this.pipeline = new AlertPipeline(new AlertPipeline.Sink() {
+            @Override
+            public void onAlert(AlertPipeline.Source source, String origin, String title, String message,
+                                AlertPayload payload, AlertTrace trace) {
+                AlertProfile profile = profileRouter.route(source, title, message);
+                Log.i(TAG, "Alert from " + source + " [" + profile + "]: " + title + " -> " + payload);
+                history.record(System.currentTimeMillis(), source.name(), origin, payload.symbol,
+                    title, message, profile.name);
+                triggerAlert(source, origin, title, message, payload, profile, trace);
+            }
+
+            @Override
+            public void onError(String message, RuntimeException e) {
+                Log.e(TAG, message, e);
+            }
+        });
 
         setupStopAlarmReceiver();
     }
 
+    /**
+     * 获取进程内共享的 AlertManager，每次 acquire 都要对应一次 {@link #release()}。
+     */
+    public static synchronized AlertManager acquire(Context context) {
+        if (instance == null) {
+            instance = new AlertManager(context.getApplicationContext());
+        }
+        refCount++;
+        return instance;
+    }
+
+    public static synchronized void release() {
+        if (refCount > 0 && --refCount == 0) {
+            instance.cleanup();
+            instance = null;
+        }
+    }
+
+    private List<AlertJournal.Entry> recoverJournal() {
+        try {
+            List<AlertJournal.Entry> recovered = journal.recover();
+            Log.i(TAG, "Journal recovered " + recovered.size() + " active alert(s) in "
+                + journal.getRecoveryMs() + "ms: " + journal);
+            return recovered;
+        } catch (IOException e) {
+            Log.e(TAG, "Error recovering alert journal", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 在输出线程上恢复日志里还没结束的警报，按原来的计划继续：
+     * 进程被杀时正在响的接着响完这一轮，两轮之间的按原时间响下一轮，
+     * 期间错过的那一轮立即补响。每条恢复的警报各自成为一个突发。
+     */
+    private void resumeAlerts(List<AlertJournal.Entry> entries) {
+        long now = System.currentTimeMillis();
+        for (AlertJournal.Entry entry : entries) {
+            AlertProfile profile = profileRouter.get(entry.profile);
+            if (profile == null) {
+                profile = profileRouter.getDefaultProfile();
+            }
+            // 时钟被往回调过时按刚开始这一轮处理
+            long sinceRound = Math.max(0, now - entry.roundStartedAt);
+            boolean inRound = sinceRound < profile.alertDurationMs;
+            if (entry.round >= profile.maxRepeats && !inRound) {
+                journal.stopped(entry.key);
+                continue;
+            }
+
+            AlertPayload payload;
+            try {
+                payload = resumeParser.parse(entry.title, entry.message);
+            } catch (RuntimeException e) {
+                // 和管线一样，解析失败照常报警；否则这条日志每次启动都让进程崩溃
+                Log.e(TAG, "Error parsing resumed alert " + entry.key, e);
+                payload = AlertPayload.EMPTY;
+            }
+            AlertInfo alertInfo = new AlertInfo(entry.key, entry.title, entry.message, payload, profile, null,
+                notificationIdCounter.incrementAndGet(), 0);
+            if (activeAlerts.putIfAbsent(entry.key, alertInfo) != null) {
+                continue;
+            }
+            AlertBurst burst = new AlertBurst(notificationIdCounter.incrementAndGet(), profile);
+            bursts.put(burst.summaryId, burst);
+            alertInfo.burst = burst;
+            burst.members.add(alertInfo);
+
+            if (entry.round == 0) {
+                alertInfo.transition(AlertState.PENDING, AlertState.SOUNDING);
+                startRound(burst, SystemClock.elapsedRealtime(), 0);
+            } else if (inRound) {
+                burst.repeatCount = entry.round - 1;
+                alertInfo.transition(AlertState.PENDING, AlertState.SOUNDING);
+                startRound(burst, SystemClock.elapsedRealtime(), sinceRound);
+            } else {
+                burst.repeatCount = entry.round;
+                burst.roundStartedAt = entry.roundStartedAt;
+                alertInfo.transition(AlertState.PENDING, AlertState.WAITING_REPEAT);
+                long delay = Math.max(0, profile.repeatIntervalMs - sinceRound);
+                scheduleTimer(burst, () -> repeatRound(burst), delay);
+            }
+            showAlertNotification(alertInfo);
+            Log.i(TAG, "Resumed alert " + entry.key + " at round " + entry.round + "/" + profile.maxRepeats);
+        }
+    }
+
+    /** 振动波形在这里一次性转成 VibrationEffect，报警时直接复用 */
+    private void compileVibrationEffects() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+        for (AlertProfile profile : profileRouter.getProfiles()) {
+            if (profile.vibrationPattern != null) {
+                vibrationEffects.put(profile.name, VibrationEffect.createWaveform(profile.vibrationPattern, -1));
+            }
+        }
+    }
+
+    /** 所有来源都通过这条管线提交警报 */
+    public AlertPipeline getPipeline() {
+        return pipeline;
+    }
+
     private void setupStopAlarmReceiver() {
         stopAlarmReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                if (STOP_ALARM_ACTION.equals(intent.getAction())) {
-                    String alertKey = intent.getStringExtra("alertKey");
-                    Log.i(TAG, "Stop alarm requested for: " + alertKey);
-                    stopAlert(alertKey);
+                if (TIMER_ACTION.equals(intent.getAction())) {
+                    // 精确闹钟到了：设备可能刚从 Doze 中唤醒
+                    PowerStats.get().wakeup(PowerStats.Wakeup.TIMER_ALARM);
+                    output.post(timerTick);
+                } else if (STOP_ALARM_ACTION.equals(intent.getAction())) {
+                    if (intent.hasExtra("burstId")) {
+                        int burstId = intent.getIntExtra("burstId", 0);
+                        Log.i(TAG, "Stop alarm requested for burst: " + burstId);
+                        output.post(() -> stopBurst(burstId));
+                    } else {
+                        String alertKey = intent.getStringExtra("alertKey");
+                        Log.i(TAG, "Stop alarm requested for: " + alertKey);
+                        stopAlert(alertKey);
+                    }
                 }
             }
         };
 
         IntentFilter filter = new IntentFilter(STOP_ALARM_ACTION);
+        filter.addAction(TIMER_ACTION);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             context.registerReceiver(stopAlarmReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
         } else {
@@ -91,150 +394,405 @@ public class AlertManager {
         }
     }
 
-    public void triggerAlert(String title, String message) {
+    /** 在管线分发线程上调用 */
+    private void triggerAlert(AlertPipeline.Source source, String origin, String title, String message,
+                              AlertPayload payload, AlertProfile profile, AlertTrace trace) {
+        // 日志必须先恢复再写入；只有启动后最早的几条警报会在这里等
+        try {
+            journalRecovered.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         String alertKey = title + ":" + message;
-
-        // 如果这个警报已经在活跃中，忽略
-        if (activeAlerts.containsKey(alertKey)) {
+        AlertInfo active = activeAlerts.get(alertKey);
+        if (active != null && !active.state.get().isTerminal()) {
+            // 同一条警报还在响，不占限流额度
             Log.d(TAG, "Alert already active, ignoring: " + alertKey);
             return;
         }
 
+        // 文字不同（比如价格变了）但品种相同的警报在这里被限流
+        AlertRateLimiter limiter = rateLimiter;
+        int suppressed = limiter.tryAcquire(AlertRateLimiter.key(payload),
+            AlertRateLimiter.sourceKey(source, origin));
+        if (suppressed == AlertRateLimiter.THROTTLED) {
+            Log.i(TAG, "Alert rate limited: " + alertKey + " " + limiter);
+            return;
+        }
+
         int notificationId = notificationIdCounter.incrementAndGet();
-        AlertInfo alertInfo = new AlertInfo(title, message, notificationId);
-        activeAlerts.put(alertKey, alertInfo);
+        AlertInfo alertInfo = new AlertInfo(alertKey, title, message, payload, profile, trace, notificationId,
+            suppressed);
+
+        // 原子地登记：同一个警报已在活跃中就忽略，已结束但还没移除的直接替换
+        AlertInfo existing = activeAlerts.putIfAbsent(alertKey, alertInfo);
+        while (existing != null) {
+            if (!existing.state.get().isTerminal()) {
+                Log.d(TAG, "Alert already active, ignoring: " + alertKey);
+                return;
+            }
+            if (activeAlerts.replace(alertKey, existing, alertInfo)) {
+                break;
+            }
+            existing = activeAlerts.putIfAbsent(alertKey, alertInfo);
+        }
+        journal.received(alertKey, title, message, profile.name);
+
+        // 交给输出线程合并进当前突发
+        output.post(() -> addToBurst(alertInfo));
+    }
+
+    /**
+     * 限流参数：每个品种最多连响 keyBurst 次，之后每 keyRefillMs 补一次；来源同理。
+     * 换参数后所有桶重新开始。
+     */
+    public void setRateLimit(int keyBurst, long keyRefillMs, int sourceBurst, long sourceRefillMs) {
+        rateLimiter = new AlertRateLimiter(keyBurst, keyRefillMs, sourceBurst, sourceRefillMs, RATE_MAX_KEYS);
+    }
 
-        // 开始第一次报警
-        performAlert(alertKey, alertInfo);
+    /** 合并窗口，0 表示每条警报单独响铃 */
+    public void setCoalesceWindow(long windowMs) {
+        coalesceWindow = windowMs;
     }
 
-    private void performAlert(String alertKey, AlertInfo alertInfo) {
-        Log.i(TAG, "Performing alert " + (alertInfo.repeatCount + 1) + "/" + MAX_REPEATS + ": " + alertKey);
+    /**
+     * 在输出线程上把警报并入当前突发。突发的第一条警报立即响铃（不为合并增加延迟），
+     * 窗口内后到的警报只加入汇总，不会重建播放器、重启振动。
+     */
+    private void addToBurst(AlertInfo alertInfo) {
+        if (!alertInfo.transition(AlertState.PENDING, AlertState.SOUNDING)) {
+            // 期间已被停止
+            return;
+        }
+        AlertTrace trace = alertInfo.trace;
+        trace.mark(AlertTrace.Stage.SCHEDULED);
+
+        AlertProfile profile = alertInfo.profile;
+        AlertBurst burst = openBursts.get(profile.name);
+        if (burst == null) {
+            burst = new AlertBurst(notificationIdCounter.incrementAndGet(), profile);
+            bursts.put(burst.summaryId, burst);
+            alertInfo.burst = burst;
+            burst.members.add(alertInfo);
+
+            long window = coalesceWindow;
+            if (window > 0) {
+                openBursts.put(profile.name, burst);
+                final AlertBurst closing = burst;
+                scheduleTimer(closing, () -> closeBurst(closing), window);
+            }
+            startRound(burst, alertInfo.createdAt, 0);
+            if (profile.hasOutput()) {
+                trace.mark(AlertTrace.Stage.AUDIO_STARTED);
+            }
+            showAlertNotification(alertInfo);
+        } else {
+            // 突发正在响，加入即出声
+            if (profile.hasOutput()) {
+                trace.mark(AlertTrace.Stage.AUDIO_STARTED);
+            }
+            alertInfo.burst = burst;
+            burst.members.add(alertInfo);
+            burst.pendingChildren.add(alertInfo);
+            journal.sounded(alertInfo.key, burst.repeatCount, burst.roundStartedAt);
+            Log.d(TAG, "Coalesced into burst " + burst.summaryId + ": " + alertInfo.key);
+        }
+        LatencyStats.get().record(trace);
+    }
 
-        // 获取 WakeLock 防止设备休眠影响振动和声音
-        acquireWakeLock();
+    /** 合并窗口结束：汇总通知更新一次，子通知按间隔逐个发出，避免触发系统限流 */
+    private void closeBurst(AlertBurst burst) {
+        if (isOpen(burst)) {
+            openBursts.remove(burst.profile.name);
+        }
+        for (int i = 0; i < burst.pendingChildren.size(); i++) {
+            final AlertInfo child = burst.pendingChildren.get(i);
+            scheduleTimer(burst, () -> {
+                if (child.state.get() == AlertState.SOUNDING || child.state.get() == AlertState.WAITING_REPEAT) {
+                    showAlertNotification(child);
+                }
+            }, (i + 1) * CHILD_NOTIFICATION_SPACING);
+        }
+        burst.pendingChildren.clear();
+        if (burst.members.size() > 1) {
+            Log.i(TAG, "Burst " + burst.summaryId + " closed with " + burst.members.size() + " alerts");
+            showSummaryNotification(burst);
+        }
+    }
 
-        // 播放声音和震动
-        playAlarmSound();
-        vibratePhone();
+    private boolean isOpen(AlertBurst burst) {
+        return openBursts.get(burst.profile.name) == burst;
+    }
 
-        // 显示通知（带停止按钮）
-        showAlertNotification(alertKey, alertInfo);
+    /**
+     * 一轮报警：声音、振动只启动一次，按突发的配置结束这一轮并安排重复
+     * （critical：3分钟后结束，10分钟后重复）。
+     *
+     * @param triggeredAt 这一轮的触发时刻（elapsedRealtime），用于统计出声延迟
+     * @param elapsedInRound 这一轮已经过去的时间，从日志恢复时非 0
+     */
+    private void startRound(AlertBurst burst, long triggeredAt, long elapsedInRound) {
+        AlertProfile profile = burst.profile;
+        burst.repeatCount++;
+        burst.roundStartedAt = System.currentTimeMillis() - elapsedInRound;
+        for (AlertInfo alertInfo : burst.members) {
+            journal.sounded(alertInfo.key, burst.repeatCount, burst.roundStartedAt);
+        }
+        final boolean lastRound = burst.repeatCount >= profile.maxRepeats;
+        Log.i(TAG, "Performing " + profile + " alert " + burst.repeatCount + "/" + profile.maxRepeats
+            + " for burst " + burst.summaryId + " (" + burst.members.size() + " alert(s))");
 
-        // 3分钟后停止声音和震动
-        handler.postDelayed(() -> {
-            stopSoundAndVibration();
-        }, ALERT_DURATION);
+        long now = SystemClock.uptimeMillis() - elapsedInRound;
 
-        // 增加重复次数
-        alertInfo.repeatCount++;
+        if (profile.hasOutput()) {
+            // 获取 WakeLock 防止设备休眠影响振动和声音
+            acquireWakeLock(now + profile.alertDurationMs, profile.name);
+
+            // 播放声音和震动
+            if (profile.sound) {
+                audioEngine.start(triggeredAt);
+            }
+            vibratePhone(profile, now);
+        }
+
+        // 这一轮结束：只影响这个突发自己，其他警报还在响时不停声音
+        scheduleTimer(burst, () -> endRound(burst, lastRound), profile.alertDurationMs - elapsedInRound);
 
         // 如果还没到最大次数，安排下次报警
-        if (alertInfo.repeatCount < MAX_REPEATS) {
-            Runnable repeatTask = () -> {
-                if (activeAlerts.containsKey(alertKey)) {
-                    performAlert(alertKey, alertInfo);
-                }
-            };
-            alertInfo.repeatTask = repeatTask;
-            handler.postDelayed(repeatTask, REPEAT_INTERVAL);
-            Log.d(TAG, "Scheduled next alert in 10 minutes");
-        } else {
+        if (!lastRound) {
+            scheduleTimer(burst, () -> repeatRound(burst), profile.repeatIntervalMs - elapsedInRound);
+            Log.d(TAG, "Scheduled next alert in " + (profile.repeatIntervalMs / 1000) + "s");
+        }
+    }
+
+    private void endRound(AlertBurst burst, boolean lastRound) {
+        AlertState next = lastRound ? AlertState.EXPIRED : AlertState.WAITING_REPEAT;
+        for (AlertInfo alertInfo : burst.members) {
+            if (alertInfo.transition(AlertState.SOUNDING, next) && lastRound) {
+                activeAlerts.remove(alertInfo.key, alertInfo);
+                journal.stopped(alertInfo.key);
+            }
+        }
+        if (lastRound) {
             // 到达最大次数，自动清理
-            Log.i(TAG, "Reached maximum repeats, stopping alert: " + alertKey);
-            activeAlerts.remove(alertKey);
+            Log.i(TAG, "Reached maximum repeats, stopping burst " + burst.summaryId);
+            bursts.remove(burst.summaryId);
+        }
+        stopOutputsIfIdle();
+    }
+
+    private void repeatRound(AlertBurst burst) {
+        boolean anyActive = false;
+        for (AlertInfo alertInfo : burst.members) {
+            anyActive |= alertInfo.transition(AlertState.WAITING_REPEAT, AlertState.SOUNDING);
+        }
+        if (!anyActive) {
+            return;
         }
+        startRound(burst, SystemClock.elapsedRealtime(), 0);
+        refreshBurstNotification(burst);
     }
 
     private void stopAlert(String alertKey) {
         AlertInfo alertInfo = activeAlerts.get(alertKey);
-        if (alertInfo != null) {
-            // 取消下次重复
-            if (alertInfo.repeatTask != null) {
-                handler.removeCallbacks(alertInfo.repeatTask);
+        if (alertInfo == null || !alertInfo.stop()) {
+            return;
+        }
+
+        // 从活跃列表移除
+        activeAlerts.remove(alertKey, alertInfo);
+        output.post(() -> onAlertStopped(alertInfo));
+    }
+
+    private void stopBurst(int burstId) {
+        AlertBurst burst = bursts.get(burstId);
+        if (burst == null) {
+            return;
+        }
+        for (AlertInfo alertInfo : new ArrayList<>(burst.members)) {
+            if (alertInfo.stop()) {
+                activeAlerts.remove(alertInfo.key, alertInfo);
+                onAlertStopped(alertInfo);
             }
+        }
+    }
 
-            // 移除通知
-            notificationManager.cancel(alertInfo.notificationId);
+    /** 在输出线程上为突发安排一个定时任务，delayMs 小于等于 0 时尽快执行 */
+    private void scheduleTimer(AlertBurst burst, Runnable task, long delayMs) {
+        // 顺便清掉已经执行过的，列表长度只和还在等待的任务数有关
+        for (int i = burst.timeouts.size() - 1; i >= 0; i--) {
+            if (!burst.timeouts.get(i).isPending()) {
+                burst.timeouts.remove(i);
+            }
+        }
+        burst.timeouts.add(timers.schedule(task, SystemClock.elapsedRealtime() + Math.max(0, delayMs)));
+        rearmTimers();
+    }
+
+    private void cancelTimers(AlertBurst burst) {
+        for (TimerWheel.Timeout timeout : burst.timeouts) {
+            timeout.cancel();
+        }
+        burst.timeouts.clear();
+        rearmTimers();
+    }
 
-            // 从活跃列表移除
-            activeAlerts.remove(alertKey);
+    private void onTimerTick() {
+        armedWakeup = Long.MAX_VALUE;
+        timers.advance(SystemClock.elapsedRealtime());
+        rearmTimers();
+    }
 
-            // 停止声音和震动
-            stopSoundAndVibration();
+    /** 按时间轮的下一次唤醒时刻重新安排唯一的那条消息（和精确闹钟），时刻没变时什么也不做 */
+    private void rearmTimers() {
+        long wakeup = timers.nextWakeup();
+        if (wakeup == armedWakeup) {
+            return;
+        }
+        armedWakeup = wakeup;
+        output.removeCallbacks(timerTick);
+        if (wakeup == Long.MAX_VALUE) {
+            cancelTimerAlarm();
+            return;
+        }
 
-            Log.i(TAG, "Alert stopped manually: " + alertKey);
+        long delay = Math.max(0, wakeup - SystemClock.elapsedRealtime());
+        // Handler 按 uptime 计时，深度睡眠时不走；远的唤醒靠精确闹钟兜底
+        output.postDelayed(timerTick, delay);
+        if (delay > EXACT_ALARM_THRESHOLD) {
+            setTimerAlarm(wakeup);
+        } else {
+            cancelTimerAlarm();
         }
     }
 
-    private void playAlarmSound() {
+    private void setTimerAlarm(long wakeupElapsed) {
+        if (alarmManager == null) {
+            return;
+        }
+        if (timerAlarm == null) {
+            Intent intent = new Intent(TIMER_ACTION);
+            intent.setPackage(context.getPackageName());
+            timerAlarm = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        }
         try {
-            if (mediaPlayer != null) {
-                mediaPlayer.stop();
-                mediaPlayer.release();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+                // 用户没有授予精确闹钟权限：退回到允许在 Doze 中触发的非精确闹钟
+                alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, wakeupElapsed, timerAlarm);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, wakeupElapsed, timerAlarm);
+            } else {
+                alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, wakeupElapsed, timerAlarm);
             }
+        } catch (SecurityException e) {
+            Log.e(TAG, "Error scheduling exact alarm", e);
+        }
+    }
 
-            Uri alarmUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
-            if (alarmUri == null) {
-                alarmUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
-            }
+    private void cancelTimerAlarm() {
+        if (alarmManager != null && timerAlarm != null) {
+            alarmManager.cancel(timerAlarm);
+        }
+    }
 
-            mediaPlayer = new MediaPlayer();
-            mediaPlayer.setDataSource(context, alarmUri);
+    /** 在输出线程上清理一条被停止的警报 */
+    private void onAlertStopped(AlertInfo alertInfo) {
+        journal.stopped(alertInfo.key);
+
+        // 移除通知
+        notificationManager.cancel(alertInfo.notificationId);
+
+        AlertBurst burst = alertInfo.burst;
+        if (burst != null) {
+            burst.members.remove(alertInfo);
+            burst.pendingChildren.remove(alertInfo);
+            if (burst.members.isEmpty()) {
+                // 取消这个突发的所有定时任务
+                cancelTimers(burst);
+                notificationManager.cancel(burst.summaryId);
+                bursts.remove(burst.summaryId);
+                if (isOpen(burst)) {
+                    openBursts.remove(burst.profile.name);
+                }
+            } else if (burst.members.size() > 1 && !isOpen(burst)) {
+                showSummaryNotification(burst);
+            } else if (!isOpen(burst)) {
+                notificationManager.cancel(burst.summaryId);
+            }
+        }
 
-            AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                .setUsage(AudioAttributes.USAGE_ALARM)
-                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                .build();
-            mediaPlayer.setAudioAttributes(audioAttributes);
+        // 没有其他警报在响时停止声音和震动
+        stopOutputsIfIdle();
 
-            mediaPlayer.setLooping(true);
-            mediaPlayer.prepare();
-            mediaPlayer.start();
+        Log.i(TAG, "Alert stopped manually: " + alertInfo.key);
+    }
 
-            Log.d(TAG, "Alarm sound started");
-        } catch (IOException e) {
-            Log.e(TAG, "Error playing alarm sound", e);
-        }
-    }
-
-    private void vibratePhone() {
-        if (vibrator != null && vibrator.hasVibrator()) {
-            // 使用足够长的振动pattern来覆盖3分钟
-            // 每个周期：振1秒，停0.5秒 = 1.5秒
-            // 3分钟 = 180秒 = 120个周期
-            // 使用-1表示不重复，直接播放完整个pattern
-            long[] pattern = new long[241]; // 0 + 120*2 = 241个元素
-            pattern[0] = 0; // 初始延迟
-            for (int i = 1; i < 241; i += 2) {
-                pattern[i] = 1000;     // 振动1秒
-                if (i + 1 < 241) {
-                    pattern[i + 1] = 500;  // 停0.5秒
-                }
+    private boolean isAnyAlertSounding() {
+        for (AlertInfo alertInfo : activeAlerts.values()) {
+            if (alertInfo.state.get() == AlertState.SOUNDING) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                VibrationEffect effect = VibrationEffect.createWaveform(pattern, -1);
-                vibrator.vibrate(effect);
-            } else {
-                vibrator.vibrate(pattern, -1);
-            }
-            Log.d(TAG, "Vibration started (3-minute pattern, no repeat)");
+    private void stopOutputsIfIdle() {
+        if (!isAnyAlertSounding()) {
+            stopSoundAndVibration();
         }
     }
 
-    private void acquireWakeLock() {
+    /**
+     * 播放配置里预先构建好的振动波形（使用-1表示不重复，直接播放完整个pattern）。
+     * 更长的波形正在振动时不打断它。
+     */
+    private void vibratePhone(AlertProfile profile, long now) {
+        if (profile.vibrationPattern == null || vibrator == null || !vibrator.hasVibrator()) {
+            return;
+        }
+        long until = now + profile.alertDurationMs;
+        if (until < vibratingUntil) {
+            return;
+        }
+        vibratingUntil = until;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            vibrator.vibrate(vibrationEffects.get(profile.name));
+        } else {
+            vibrator.vibrate(profile.vibrationPattern, -1);
+        }
+        Log.d(TAG, "Vibration started (" + profile + " pattern, no repeat)");
+    }
+
+    /**
+     * 保持唤醒到 until（uptimeMillis）再加5秒缓冲，已经覆盖到更晚时不缩短。
+     * reason 是记账用的原因（配置名），延长时从延长的时刻起记到新的原因上。
+     */
+    private void acquireWakeLock(long until, String reason) {
         try {
-            if (wakeLock == null || !wakeLock.isHeld()) {
+            if (wakeLock == null) {
                 PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-                if (powerManager != null) {
-                    wakeLock = powerManager.newWakeLock(
-                        PowerManager.PARTIAL_WAKE_LOCK,
-                        "TVAlert:AlertWakeLock"
-                    );
-                    wakeLock.acquire(ALERT_DURATION + 5000); // 3分钟 + 5秒缓冲
-                    Log.d(TAG, "WakeLock acquired");
+                if (powerManager == null) {
+                    return;
                 }
+                wakeLock = powerManager.newWakeLock(
+                    PowerManager.PARTIAL_WAKE_LOCK,
+                    "TVAlert:AlertWakeLock"
+                );
+                wakeLock.setReferenceCounted(false);
+            }
+            if (!wakeLock.isHeld() || until > wakeLockUntil) {
+                long now = SystemClock.uptimeMillis();
+                // 上一段（可能已经超时自动释放）先入账
+                accountWakeLock(now);
+                wakeLockUntil = until;
+                wakeLockHeldSince = now;
+                wakeLockReason = reason;
+                wakeLockExpiresAt = until + 5000;
+                // 非计数锁再次 acquire 会用新的超时替换旧的
+                wakeLock.acquire(until - now + 5000);
+                Log.d(TAG, "WakeLock acquired");
             }
         } catch (Exception e) {
             Log.e(TAG, "Error acquiring WakeLock", e);
@@ -244,63 +802,86 @@ public class AlertManager {
     private void releaseWakeLock() {
         try {
             if (wakeLock != null && wakeLock.isHeld()) {
+                wakeLockUntil = 0;
                 wakeLock.release();
                 Log.d(TAG, "WakeLock released");
             }
+            accountWakeLock(SystemClock.uptimeMillis());
         } catch (Exception e) {
             Log.e(TAG, "Error releasing WakeLock", e);
         }
     }
 
-    private void stopSoundAndVibration() {
-        if (mediaPlayer != null && mediaPlayer.isPlaying()) {
-            mediaPlayer.stop();
-            mediaPlayer.release();
-            mediaPlayer = null;
-            Log.d(TAG, "Alarm sound stopped");
+    /** 把当前这一段持有时间记到 PowerStats，超时自动释放的只记到超时为止 */
+    private void accountWakeLock(long now) {
+        if (wakeLockHeldSince > 0) {
+            PowerStats.get().wakeLockHeld(wakeLockReason, Math.min(now, wakeLockExpiresAt) - wakeLockHeldSince);
+            wakeLockHeldSince = 0;
         }
+    }
+
+    private void stopSoundAndVibration() {
+        // 只暂停，播放器保持准备好的状态供下次使用
+        audioEngine.stop();
 
         if (vibrator != null) {
             vibrator.cancel();
+            vibratingUntil = 0;
             Log.d(TAG, "Vibration stopped");
         }
 
         releaseWakeLock();
     }
 
-    private void showAlertNotification(String alertKey, AlertInfo alertInfo) {
-        // 创建停止按钮的Intent
+    private PendingIntent stopIntent(String extraName, Object extraValue, int requestCode) {
         Intent stopIntent = new Intent(STOP_ALARM_ACTION);
-        stopIntent.putExtra("alertKey", alertKey);
+        if (extraValue instanceof Integer) {
+            stopIntent.putExtra(extraName, (Integer) extraValue);
+        } else {
+            stopIntent.putExtra(extraName, (String) extraValue);
+        }
         stopIntent.setPackage(context.getPackageName());
 
-        PendingIntent stopPendingIntent = PendingIntent.getBroadcast(
+        return PendingIntent.getBroadcast(
             context,
-            alertInfo.notificationId,
+            requestCode,
             stopIntent,
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
+    }
+
+    private void showAlertNotification(AlertInfo alertInfo) {
+        // 创建停止按钮的Intent
+        PendingIntent stopPendingIntent = stopIntent("alertKey", alertInfo.key, alertInfo.notificationId);
 
         // 创建点击通知的Intent（点击也能停止）
-        PendingIntent contentIntent = PendingIntent.getBroadcast(
-            context,
-            alertInfo.notificationId + 10000,
-            stopIntent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
+        PendingIntent contentIntent = stopIntent("alertKey", alertInfo.key, alertInfo.notificationId + 10000);
 
+        AlertProfile profile = alertInfo.profile;
+        int repeatCount = alertInfo.burst != null ? alertInfo.burst.repeatCount : 1;
         String contentText = String.format("Alert %d/%d: %s - %s\n\n👆 点击通知或按下方\"停止\"按钮关闭警报",
-            alertInfo.repeatCount, MAX_REPEATS, alertInfo.title, alertInfo.message);
+            repeatCount, profile.maxRepeats, alertInfo.title, alertInfo.message);
+        if (alertInfo.suppressed > 0) {
+            contentText = String.format("%s\n⏸ 此前另有 %d 条同类警报被限流", contentText, alertInfo.suppressed);
+        }
+        // 解析出品种时标题直接写明品种、条件和价格，锁屏上一眼就能看到
+        String summary = alertInfo.payload.describe();
+        String contentTitle = summary != null ? "🔔 " + summary : "🔔 TradingView Alert!";
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context, "tv_alerts")
             .setSmallIcon(android.R.drawable.ic_dialog_alert)
-            .setContentTitle("🔔 TradingView Alert!")
+            .setContentTitle(contentTitle)
             .setContentText(contentText)
             .setStyle(new NotificationCompat.BigTextStyle().bigText(contentText))
-            .setPriority(NotificationCompat.PRIORITY_MAX)
+            .setPriority(profile.persistent ? NotificationCompat.PRIORITY_MAX : NotificationCompat.PRIORITY_DEFAULT)
             .setCategory(NotificationCompat.CATEGORY_ALARM)
-            .setAutoCancel(false)
-            .setOngoing(true)
+            .setAutoCancel(!profile.persistent)
+            .setOngoing(profile.persistent)
+            .setSilent(!profile.sound)
+            .setOnlyAlertOnce(true)
+            .setGroup(GROUP_KEY)
+            // 声音由我们自己的播放器负责，组内子通知不再各自提醒
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
             .setContentIntent(contentIntent)  // 点击通知也能停止
             .addAction(android.R.drawable.ic_delete, "停止", stopPendingIntent);
 
@@ -308,12 +889,87 @@ public class AlertManager {
         Log.d(TAG, "Alert notification shown with Stop button");
     }
 
-    public void cleanup() {
+    /** 汇总通知：列出突发中的每条警报，一个按钮停止全部 */
+    private void showSummaryNotification(AlertBurst burst) {
+        PendingIntent stopAllIntent = stopIntent("burstId", burst.summaryId, burst.summaryId);
+
+        int count = burst.members.size();
+        String title = "🔔 " + count + " TradingView Alerts";
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+            .setBigContentTitle(title);
+        for (int i = 0; i < count && i < MAX_SUMMARY_LINES; i++) {
+            AlertInfo alertInfo = burst.members.get(i);
+            String summary = alertInfo.payload.describe();
+            String line = summary != null ? summary : alertInfo.title + " - " + alertInfo.message;
+            style.addLine(alertInfo.suppressed > 0 ? line + " (+" + alertInfo.suppressed + " 限流)" : line);
+        }
+        if (count > MAX_SUMMARY_LINES) {
+            style.setSummaryText("+" + (count - MAX_SUMMARY_LINES) + " more");
+        }
+
+        AlertProfile profile = burst.profile;
+        String contentText = String.format("Alert %d/%d: %d alerts", burst.repeatCount, profile.maxRepeats, count);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, "tv_alerts")
+            .setSmallIcon(android.R.drawable.ic_dialog_alert)
+            .setContentTitle(title)
+            .setContentText(contentText)
+            .setStyle(style)
+            .setNumber(count)
+            .setPriority(profile.persistent ? NotificationCompat.PRIORITY_MAX : NotificationCompat.PRIORITY_DEFAULT)
+            .setCategory(NotificationCompat.CATEGORY_ALARM)
+            .setAutoCancel(!profile.persistent)
+            .setOngoing(profile.persistent)
+            .setSilent(!profile.sound)
+            .setOnlyAlertOnce(true)
+            .setGroup(GROUP_KEY)
+            .setGroupSummary(true)
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+            .setContentIntent(stopAllIntent)
+            .addAction(android.R.drawable.ic_delete, "全部停止", stopAllIntent);
+
+        notificationManager.notify(burst.summaryId, builder.build());
+        Log.d(TAG, "Summary notification shown for " + count + " alerts");
+    }
+
+    /** 重复时只更新一条通知：多条警报更新汇总，单条警报更新它自己 */
+    private void refreshBurstNotification(AlertBurst burst) {
+        if (burst.members.size() > 1) {
+            showSummaryNotification(burst);
+        } else if (!burst.members.isEmpty()) {
+            showAlertNotification(burst.members.get(0));
+        }
+    }
+
+    private void cleanup() {
+        pipeline.shutdown();
+        // 恢复任务可能还没执行就被下面清掉，不能让分发线程一直等
+        journalRecovered.countDown();
+        Log.d(TAG, "Pipeline stats: " + pipeline);
         if (stopAlarmReceiver != null) {
             context.unregisterReceiver(stopAlarmReceiver);
         }
-        stopSoundAndVibration();
-        handler.removeCallbacksAndMessages(null);
+        // 服务被系统销毁不算停止，日志里的警报下次启动时继续
+        for (AlertInfo alertInfo : activeAlerts.values()) {
+            alertInfo.stop();
+        }
         activeAlerts.clear();
+        output.removeCallbacksAndMessages(null);
+        output.post(() -> {
+            for (int i = 0; i < bursts.size(); i++) {
+                for (TimerWheel.Timeout timeout : bursts.valueAt(i).timeouts) {
+                    timeout.cancel();
+                }
+            }
+            cancelTimerAlarm();
+            Log.d(TAG, "Timer stats: " + timers);
+            bursts.clear();
+            openBursts.clear();
+            stopSoundAndVibration();
+            Log.d(TAG, "Audio stats: " + audioEngine);
+            audioEngine.release();
+            journal.close();
+            Log.d(TAG, "Journal stats: " + journal);
+        });
+        outputThread.quitSafely();
     }
 }
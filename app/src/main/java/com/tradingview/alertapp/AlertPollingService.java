@@ -4,207 +4,290 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.media.AudioAttributes;
-import android.media.MediaPlayer;
 import android.media.RingtoneManager;
-import android.net.Uri;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
-import android.os.VibrationEffect;
-import android.os.Vibrator;
+import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
 
 public class AlertPollingService extends Service {
     private static final String TAG = "AlertPollingService";
     private static final String CHANNEL_ID = "alert_polling";
     private static final int NOTIFICATION_ID = 100;
+    private static final int BUDGET_NOTIFICATION_ID = 101;
+    // 耗电预算最多每15分钟检查一次，顺带在轮询或推送时做，不为它单独唤醒
+    private static final long BUDGET_CHECK_INTERVAL = 15 * 60 * 1000L;
     private static final long POLL_INTERVAL = 5000; // 5 seconds
-
-    private Handler handler;
-    private Runnable pollingRunnable;
-    private MediaPlayer mediaPlayer;
-    private Vibrator vibrator;
-
-    // TODO: Replace with your server URL
-    private static final String SERVER_URL = "http://10.0.0.170:80/poll";
+    // 自适应间隔：警报后收紧到2秒，故障或长时间安静时最多放宽到60秒
+    private static final long POLL_INTERVAL_FLOOR = 2000;
+    private static final long POLL_INTERVAL_CEILING = 60000;
+    private static final long BOOST_WINDOW = 60000; // 警报后1分钟内保持最短间隔
+    private static final long QUIET_AFTER = 900000; // 15分钟没有警报开始放宽
+
+    private PollScheduler pollScheduler;
+    private AdaptivePollInterval pollInterval;
+    private AlertPoller poller;
+    // 推送线程单独用一个解析器（轮询的在 AlertPoller 里），缓冲在多次调用之间复用
+    private final AlertJsonReader streamReader = new AlertJsonReader();
+    private final AlertJsonReader.AlertHandler pollHandler =
+        (id, subject, from, time) -> handleAlert(AlertPipeline.Source.POLLER, id, subject, from, time);
+    // 增量协议的游标（since / ETag / 待确认的 id），跨服务重启持久化
+    private PollCursor pollCursor;
+    private SharedPreferences cursorPrefs;
+    // 启动时的轮询地址，游标和它一起保存
+    private String serverUrl;
+    // 警报统一交给共享的 AlertManager（重复、停止按钮、去重都在那里）
+    private AlertManager alertManager;
+
+    // 推送连接在线时暂停轮询，断线后由轮询兜底
+    private AlertStreamClient streamClient;
+
+    private PowerBudget powerBudget;
+    private long lastBudgetCheck;
+    // 上次通知过的超预算项，没变化时不重复通知
+    private String lastBudgetWarning = "";
+
+    // 默认端点；可以在 MainActivity 里改成其他地址（比如电脑上跑的替身服务器）
+    static final String DEFAULT_SERVER_URL = "http://10.0.0.170:80/poll";
+    static final String SETTINGS_PREFS = "poll_settings";
+    static final String PREF_SERVER_URL = "server_url";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String CURSOR_PREFS = "poll_cursor";
+    private static final String PREF_LAST_ID = "last_id";
+    private static final String PREF_ETAG = "etag";
+    private static final String PREF_PENDING_ACKS = "pending_acks";
+    // 游标属于哪个轮询地址，换了地址就不能接着用
+    private static final String PREF_CURSOR_URL = "url";
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "AlertPollingService Created");
 
-        vibrator = (Vibrator) getSystemService(VIBRATOR_SERVICE);
-        handler = new Handler(Looper.getMainLooper());
+        alertManager = AlertManager.acquire(this);
+        powerBudget = loadPowerBudget(this);
 
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, createForegroundNotification());
 
-        // Start polling
-        pollingRunnable = new Runnable() {
-            @Override
-            public void run() {
-                pollForAlerts();
-                handler.postDelayed(this, POLL_INTERVAL);
-            }
-        };
-        handler.post(pollingRunnable);
+        serverUrl = getServerUrl(this);
+        cursorPrefs = getSharedPreferences(CURSOR_PREFS, MODE_PRIVATE);
+        String cursorUrl = cursorPrefs.getString(PREF_CURSOR_URL, null);
+        if (cursorUrl != null && !cursorUrl.equals(serverUrl)) {
+            // 旧服务停止前最后一次保存可能晚于 MainActivity 的清除
+            Log.i(TAG, "Poll URL changed from " + cursorUrl + ", dropping its cursor");
+            cursorPrefs.edit().clear().apply();
+        }
+        pollCursor = new PollCursor(
+            cursorPrefs.getString(PREF_LAST_ID, null),
+            cursorPrefs.getString(PREF_ETAG, null),
+            cursorPrefs.getString(PREF_PENDING_ACKS, ""));
+        Log.d(TAG, "Restored poll cursor: since=" + pollCursor.getLastId());
 
-        Log.i(TAG, "Polling started");
-    }
+        poller = new AlertPoller(AlertPoller.parseUrls(serverUrl), pollCursor,
+            AlertPoller.DEFAULT_CONNECT_TIMEOUT, AlertPoller.DEFAULT_READ_TIMEOUT);
+        Log.i(TAG, "Polling " + serverUrl);
 
-    private void pollForAlerts() {
-        new Thread(() -> {
+        // Start polling
+        pollInterval = new AdaptivePollInterval(POLL_INTERVAL_FLOOR, POLL_INTERVAL,
+            POLL_INTERVAL_CEILING, BOOST_WINDOW, QUIET_AFTER);
+        pollScheduler = new PollScheduler("poll", () -> {
+            long next;
             try {
-                URL url = new URL(SERVER_URL);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-                conn.setConnectTimeout(5000);
-                conn.setReadTimeout(5000);
-
-                int responseCode = conn.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
-
-                    // Parse JSON response
-                    JSONObject jsonResponse = new JSONObject(response.toString());
-                    JSONArray alerts = jsonResponse.getJSONArray("alerts");
-                    int count = jsonResponse.getInt("count");
-
-                    if (count > 0) {
-                        Log.i(TAG, "Received " + count + " alert(s)");
-
-                        // Trigger alarm for each alert
-                        for (int i = 0; i < alerts.length(); i++) {
-                            JSONObject alert = alerts.getJSONObject(i);
-                            String subject = alert.getString("subject");
-                            String from = alert.optString("from", "");
-
-                            Log.i(TAG, "Alert: " + subject + " from " + from);
-                            triggerAlert(subject, from);
-                        }
-                    }
-                }
-                conn.disconnect();
+                next = pollInterval.onSuccess(pollForAlerts());
             } catch (Exception e) {
                 Log.e(TAG, "Error polling for alerts", e);
+                applyPollInterval(pollInterval.onFailure());
+                throw e;
+            } finally {
+                checkPowerBudget();
             }
-        }).start();
-    }
-
-    private void triggerAlert(String title, String message) {
-        Log.i(TAG, "Triggering alert: " + title);
+            applyPollInterval(next);
+        }, POLL_INTERVAL);
+        pollScheduler.start();
 
-        // Play alarm sound
-        playAlarmSound();
-
-        // Vibrate
-        vibratePhone();
+        Log.i(TAG, "Polling started");
 
-        // Show notification
-        showAlertNotification(title, message);
+        startAlertStream();
     }
 
-    private void playAlarmSound() {
-        try {
-            if (mediaPlayer != null) {
-                mediaPlayer.stop();
-                mediaPlayer.release();
+    private void startAlertStream() {
+        streamClient = new AlertStreamClient(streamUrlFor(poller.getServerUrl()), new AlertStreamClient.Listener() {
+            @Override
+            public void onConnected() {
+                PowerStats.get().wakeup(PowerStats.Wakeup.STREAM_CONNECT);
+                checkPowerBudget();
+                pollScheduler.stop();
+                Log.i(TAG, "Alert stream connected, polling paused");
             }
 
-            Uri alarmUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
-            if (alarmUri == null) {
-                alarmUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
+            @Override
+            public void onEvent(final String id, String event, String data) {
+                if (event != null && !"alert".equals(event)) {
+                    Log.d(TAG, "Ignoring stream event: " + event);
+                    return;
+                }
+                try {
+                    // 负载里没有 id 时用事件 id 去重
+                    streamReader.read(new ByteArrayInputStream(data.getBytes(UTF_8)),
+                        (alertId, subject, from, time) -> handleAlert(AlertPipeline.Source.STREAM,
+                            alertId != null ? alertId : id, subject, from, time));
+                } catch (IOException e) {
+                    Log.e(TAG, "Malformed stream event " + id, e);
+                }
+                saveCursor();
+                checkPowerBudget();
             }
 
-            mediaPlayer = new MediaPlayer();
-            mediaPlayer.setDataSource(this, alarmUri);
+            @Override
+            public void onDisconnected(Exception cause) {
+                Log.w(TAG, "Alert stream disconnected: " + (cause != null ? cause.getMessage() : "closed by server"));
+                if (!pollScheduler.isRunning()) {
+                    // start() 会立即补一次轮询，覆盖断线期间的警报
+                    pollScheduler.start();
+                    Log.i(TAG, "Falling back to polling");
+                }
+            }
+        });
+        // 推送从轮询的游标处继续，反之亦然
+        streamClient.setLastEventId(pollCursor.getLastId());
+        streamClient.start();
+    }
 
-            AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                .setUsage(AudioAttributes.USAGE_ALARM)
-                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                .build();
-            mediaPlayer.setAudioAttributes(audioAttributes);
+    private void applyPollInterval(long intervalMs) {
+        if (intervalMs != pollScheduler.getInterval()) {
+            Log.d(TAG, "Poll interval " + pollScheduler.getInterval() + "ms -> " + intervalMs
+                + "ms (" + pollInterval.getCurrentReason() + ")");
+            pollScheduler.setInterval(intervalMs);
+        }
+    }
 
-            mediaPlayer.setLooping(true);
-            mediaPlayer.prepare();
-            mediaPlayer.start();
+    /**
+     * @return 本次收到的警报数量
+     */
+    private int pollForAlerts() throws Exception {
+        int count;
+        try {
+            // 边读边解析，每条警报解析完立即触发
+            count = poller.poll(pollHandler);
+        } finally {
+            // 响应被截断时，已经处理的警报也要记下来
+            saveCursor();
+        }
+        if (count > 0) {
+            Log.i(TAG, "Received " + count + " alert(s)");
+        }
+        return count;
+    }
 
-            // Auto stop after 5 minutes
-            new Thread(() -> {
-                try {
-                    Thread.sleep(300000);
-                    if (mediaPlayer != null && mediaPlayer.isPlaying()) {
-                        mediaPlayer.stop();
-                        mediaPlayer.release();
-                    }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
+    /** 资源里配置的耗电预算，配置写错时用默认值 */
+    static PowerBudget loadPowerBudget(Context context) {
+        try {
+            return new PowerBudget(context.getResources().getStringArray(R.array.power_budgets));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Invalid power budget config, using defaults", e);
+            return new PowerBudget();
+        }
+    }
 
-        } catch (IOException e) {
-            Log.e(TAG, "Error playing alarm sound", e);
+    /**
+     * 轮询线程和推送线程都会调用。超出预算时记日志并发一条低优先级通知，
+     * 同样的超出项只通知一次，回到预算内后撤掉通知。
+     */
+    private synchronized void checkPowerBudget() {
+        long now = System.currentTimeMillis();
+        if (now - lastBudgetCheck < BUDGET_CHECK_INTERVAL) {
+            return;
         }
+        lastBudgetCheck = now;
+        logPollEndpoints();
+        List<String> exceeded = powerBudget.check(PowerStats.get(), now);
+        String warning = TextUtils.join("\n", exceeded);
+        if (warning.equals(lastBudgetWarning)) {
+            return;
+        }
+        lastBudgetWarning = warning;
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (exceeded.isEmpty()) {
+            Log.i(TAG, "Power usage back within budget");
+            manager.cancel(BUDGET_NOTIFICATION_ID);
+            return;
+        }
+        Log.w(TAG, "Power budget exceeded:\n" + warning);
+        manager.notify(BUDGET_NOTIFICATION_ID, new NotificationCompat.Builder(this, CHANNEL_ID)
+            .setSmallIcon(android.R.drawable.ic_dialog_info)
+            .setContentTitle("⚠ Power budget exceeded")
+            .setContentText(exceeded.get(0))
+            .setStyle(new NotificationCompat.BigTextStyle().bigText(warning))
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .build());
     }
 
-    private void vibratePhone() {
-        if (vibrator != null && vibrator.hasVibrator()) {
-            long[] pattern = {0, 1000, 500, 1000, 500, 1000};
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                VibrationEffect effect = VibrationEffect.createWaveform(pattern, 0);
-                vibrator.vibrate(effect);
-            } else {
-                vibrator.vibrate(pattern, 0);
-            }
+    private void logPollEndpoints() {
+        Log.d(TAG, "Poller: " + poller);
+        for (PollEndpoint endpoint : poller.getEndpoints()) {
+            Log.d(TAG, "Poll endpoint: " + endpoint + " " + endpoint.getTransport());
+        }
+    }
 
-            // Auto stop vibration after 5 minutes
-            new Thread(() -> {
-                try {
-                    Thread.sleep(300000);
-                    if (vibrator != null) {
-                        vibrator.cancel();
-                    }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
+    /** 轮询端点（可以是逗号分隔的多个），没有设置过时用默认地址 */
+    static String getServerUrl(Context context) {
+        String url = context.getSharedPreferences(SETTINGS_PREFS, MODE_PRIVATE)
+            .getString(PREF_SERVER_URL, null);
+        return url != null && !url.isEmpty() ? url : DEFAULT_SERVER_URL;
+    }
+
+    /** 推送端点和轮询在同一台服务器上：.../poll 对应 .../events */
+    static String streamUrlFor(String serverUrl) {
+        if (serverUrl.endsWith("/poll")) {
+            return serverUrl.substring(0, serverUrl.length() - "/poll".length()) + "/events";
         }
+        return serverUrl.replaceAll("/+$", "") + "/events";
+    }
+
+    /**
+     * 清掉持久化的游标（since、ETag、待确认的 id）。它们是旧服务器上的位置，
+     * 换了轮询地址后要在重启服务前调用，否则新服务器会收到旧的 since 和 ETag。
+     */
+    static void clearCursor(Context context) {
+        context.getSharedPreferences(CURSOR_PREFS, MODE_PRIVATE).edit().clear().apply();
     }
 
-    private void showAlertNotification(String title, String message) {
-        NotificationManager notificationManager =
-            (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+    private void saveCursor() {
+        if (pollCursor.takeDirty()) {
+            cursorPrefs.edit()
+                .putString(PREF_CURSOR_URL, serverUrl)
+                .putString(PREF_LAST_ID, pollCursor.getLastId())
+                .putString(PREF_ETAG, pollCursor.getEtag())
+                .putString(PREF_PENDING_ACKS, pollCursor.getPendingAcks())
+                .apply();
+        }
+    }
 
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, "tv_alerts")
-            .setSmallIcon(android.R.drawable.ic_dialog_alert)
-            .setContentTitle("TradingView Alert!")
-            .setContentText(title + ": " + message)
-            .setPriority(NotificationCompat.PRIORITY_MAX)
-            .setCategory(NotificationCompat.CATEGORY_ALARM)
-            .setAutoCancel(true);
+    private void handleAlert(AlertPipeline.Source source, String id, String subject, String from, long time) {
+        AlertTrace trace = AlertTrace.received(source, time);
+        // 轮询和推送可能重复送达同一条警报，按 id 去重
+        if (!pollCursor.markProcessed(id)) {
+            Log.d(TAG, "Duplicate alert id " + id + ", skipping");
+            return;
+        }
 
-        notificationManager.notify((int) System.currentTimeMillis(), builder.build());
+        Log.i(TAG, "Alert: " + subject + " from " + from);
+        // 服务器已经筛选过，不需要再分类
+        trace.mark(AlertTrace.Stage.CLASSIFIED);
+        alertManager.getPipeline().submit(trace, null, subject, from);
     }
 
     private Notification createForegroundNotification() {
@@ -257,15 +340,19 @@ public class AlertPollingService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (handler != null && pollingRunnable != null) {
-            handler.removeCallbacks(pollingRunnable);
+        if (streamClient != null) {
+            streamClient.stop();
         }
-        if (mediaPlayer != null) {
-            mediaPlayer.release();
-            mediaPlayer = null;
+        if (pollScheduler != null) {
+            pollScheduler.shutdown();
+            Log.d(TAG, "Poll stats: " + pollScheduler);
+            Log.d(TAG, "Poll interval history: " + pollInterval.getHistory());
+            poller.shutdown();
+            logPollEndpoints();
         }
-        if (vibrator != null) {
-            vibrator.cancel();
+        if (alertManager != null) {
+            AlertManager.release();
+            alertManager = null;
         }
         Log.d(TAG, "AlertPollingService Destroyed");
     }
@@ -5,17 +5,53 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.os.Bundle;
 import android.provider.Settings;
+import android.text.InputType;
 import android.text.TextUtils;
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.widget.AbsListView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class MainActivity extends AppCompatActivity {
+    // 历史列表每页条数，滚动到离底部还剩这么多条时加载下一页
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final int HISTORY_PREFETCH = 10;
+
     private TextView statusText;
     private Button enableButton;
     private Button testButton;
+    private TextView latencyText;
+    private TextView powerText;
+    private PowerBudget powerBudget;
+
+    private TextView historyHeader;
+    private AlertHistoryStore historyStore;
+    private ArrayAdapter<String> historyAdapter;
+    private final List<AlertHistoryStore.Record> historyRecords = new ArrayList<>();
+    private final SimpleDateFormat historyTimeFormat = new SimpleDateFormat("MM-dd HH:mm:ss", Locale.US);
+    // 查询在后台线程上做，不阻塞界面
+    private final ExecutorService historyExecutor = Executors.newSingleThreadExecutor();
+    private String historyPackageFilter;
+    private String historySymbolFilter;
+    // 换了过滤条件后，之前发出的查询结果直接丢弃
+    private int historyGeneration;
+    private boolean historyLoading;
+    private boolean historyExhausted;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,10 +76,203 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        statusText.setOnLongClickListener(v -> {
+            showServerUrlDialog();
+            return true;
+        });
+
+        latencyText = findViewById(R.id.latencyText);
+        Button exportLatencyButton = findViewById(R.id.exportLatencyButton);
+        exportLatencyButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                exportLatency();
+            }
+        });
+
+        powerText = findViewById(R.id.powerText);
+        powerBudget = AlertPollingService.loadPowerBudget(this);
+        Button exportPowerButton = findViewById(R.id.exportPowerButton);
+        exportPowerButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                exportPower();
+            }
+        });
+
+        setupHistory();
+
         // Start polling service automatically
         startAlertPollingService();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        historyExecutor.shutdownNow();
+    }
+
+    /** 通过系统分享导出所有来源、所有阶段的延迟统计，以及几条路径谁先到（CSV） */
+    private void exportLatency() {
+        latencyText.setText(latencySummary());
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "TV Alert latency " + historyTimeFormat.format(new Date()));
+        intent.putExtra(Intent.EXTRA_TEXT, LatencyStats.get().exportCsv() + "\n"
+            + DeliveryRaceStats.get().exportCsv());
+        startActivity(Intent.createChooser(intent, "Export Latency"));
+    }
+
+    /** 通过系统分享导出耗电记账（CSV，带每小时/每天折算和预算） */
+    private void exportPower() {
+        powerText.setText(PowerStats.get().summary(powerBudget));
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "TV Alert power usage " + historyTimeFormat.format(new Date()));
+        intent.putExtra(Intent.EXTRA_TEXT, PowerStats.get().exportCsv(powerBudget));
+        startActivity(Intent.createChooser(intent, "Export Power"));
+    }
+
+    /** 各来源的端到端延迟，加上同一条警报从几条路径到达时谁先到、其余落后多久 */
+    private String latencySummary() {
+        return LatencyStats.get().summary() + "\n\n" + DeliveryRaceStats.get().summary();
+    }
+
+    private void setupHistory() {
+        historyStore = AlertHistoryStore.get(this);
+        historyHeader = findViewById(R.id.historyHeader);
+        historyAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, new ArrayList<String>());
+
+        ListView historyList = findViewById(R.id.historyList);
+        historyList.setAdapter(historyAdapter);
+        historyList.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - HISTORY_PREFETCH) {
+                    loadNextHistoryPage();
+                }
+            }
+        });
+
+        EditText historyFilter = findViewById(R.id.historyFilter);
+        historyFilter.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                applyHistoryFilter(v.getText().toString());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 含 '.' 的小写输入按包名过滤，否则按品种：BINANCE:BTCUSDT 只看这个交易所，
+     * BTCUSDT 看所有交易所的
+     */
+    private void applyHistoryFilter(String filter) {
+        filter = filter.trim();
+        historyPackageFilter = null;
+        historySymbolFilter = null;
+        if (filter.indexOf('.') > 0 && filter.equals(filter.toLowerCase(Locale.US))) {
+            historyPackageFilter = filter;
+        } else if (!filter.isEmpty()) {
+            historySymbolFilter = filter.toUpperCase(Locale.US);
+        }
+        reloadHistory();
+    }
+
+    private void reloadHistory() {
+        historyGeneration++;
+        historyRecords.clear();
+        historyAdapter.clear();
+        historyLoading = false;
+        historyExhausted = false;
+        loadNextHistoryPage();
+    }
+
+    /** 从上一页最后一条往后取一页（键集分页），结果追加到列表末尾 */
+    private void loadNextHistoryPage() {
+        if (historyLoading || historyExhausted) {
+            return;
+        }
+        historyLoading = true;
+        final int generation = historyGeneration;
+        final AlertHistoryStore.Record after = historyRecords.isEmpty()
+            ? null : historyRecords.get(historyRecords.size() - 1);
+        final String packageFilter = historyPackageFilter;
+        final String symbolFilter = historySymbolFilter;
+
+        historyExecutor.execute(() -> {
+            final List<AlertHistoryStore.Record> page =
+                historyStore.queryPage(after, packageFilter, symbolFilter, HISTORY_PAGE_SIZE);
+            runOnUiThread(() -> {
+                if (generation != historyGeneration || isFinishing()) {
+                    return;
+                }
+                historyLoading = false;
+                historyExhausted = page.size() < HISTORY_PAGE_SIZE;
+                for (AlertHistoryStore.Record record : page) {
+                    historyRecords.add(record);
+                    historyAdapter.add(formatHistoryRecord(record));
+                }
+                historyHeader.setText("Alert History (" + historyRecords.size()
+                    + (historyExhausted ? "" : "+") + ")");
+            });
+        });
+    }
+
+    private String formatHistoryRecord(AlertHistoryStore.Record record) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(historyTimeFormat.format(new Date(record.time)));
+        if (record.symbol != null) {
+            sb.append("  ").append(record.symbol);
+        }
+        sb.append("  [").append(record.source).append('/').append(record.profile).append("]\n");
+        sb.append(record.title).append(" - ").append(record.message);
+        if (record.packageName != null) {
+            sb.append("\n").append(record.packageName);
+        }
+        return sb.toString();
+    }
+
+    /** 修改轮询端点（比如指向电脑上的替身服务器），保存后重启轮询服务 */
+    private void showServerUrlDialog() {
+        final EditText input = new EditText(this);
+        input.setSingleLine(true);
+        input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        input.setText(AlertPollingService.getServerUrl(this));
+
+        new AlertDialog.Builder(this)
+            .setTitle("Poll Server URL")
+            .setMessage("Separate replicas with commas to hedge polls across them. Leave empty to use "
+                + AlertPollingService.DEFAULT_SERVER_URL)
+            .setView(input)
+            .setPositiveButton("Save", (dialog, which) -> {
+                String url = input.getText().toString().trim();
+                for (String endpoint : AlertPoller.parseUrls(url)) {
+                    if (!endpoint.startsWith("http://") && !endpoint.startsWith("https://")) {
+                        Toast.makeText(this, "URL must start with http:// or https://", Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                }
+                String previous = AlertPollingService.getServerUrl(this);
+                getSharedPreferences(AlertPollingService.SETTINGS_PREFS, MODE_PRIVATE).edit()
+                    .putString(AlertPollingService.PREF_SERVER_URL, url)
+                    .apply();
+                if (!previous.equals(AlertPollingService.getServerUrl(this))) {
+                    // 旧服务器的 since、ETag 和待确认的 id 对新服务器没有意义
+                    AlertPollingService.clearCursor(this);
+                }
+                stopService(new Intent(this, AlertPollingService.class));
+                startAlertPollingService();
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+
     private void startAlertPollingService() {
         Intent intent = new Intent(this, AlertPollingService.class);
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
@@ -57,6 +286,9 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         updateStatus();
+        latencyText.setText(latencySummary());
+        powerText.setText(PowerStats.get().summary(powerBudget));
+        reloadHistory();
     }
 
     private void updateStatus() {
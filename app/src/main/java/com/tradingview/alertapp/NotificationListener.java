@@ -31,17 +31,25 @@ public class NotificationListener extends NotificationListenerService {
     private static final String CHANNEL_ID = "tv_alerts";
     private static final String TEST_ALERT_ACTION = "com.tradingview.alertapp.TEST_ALERT";
     private AlertManager alertManager;
+    private NotificationIngest ingest;
     private BroadcastReceiver testAlertReceiver;
 
-    // 防止重复报警：记录已处理的通知
-    private final java.util.Set<String> processedNotifications = new java.util.HashSet<>();
+    // 防止重复报警：记录已处理的通知，1分钟冷却后自动过期
     private static final long NOTIFICATION_COOLDOWN = 60000; // 1分钟冷却时间
+    private static final int MAX_TRACKED_NOTIFICATIONS = 1024;
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "NotificationListener Service Created");
-        alertManager = new AlertManager(this);
+        alertManager = AlertManager.acquire(this);
+        AlertClassifier alertClassifier = new AlertClassifier(
+            getResources().getStringArray(R.array.alert_app_package_fragments),
+            getResources().getStringArray(R.array.alert_content_packages),
+            getResources().getStringArray(R.array.alert_keywords));
+        ingest = new NotificationIngest(alertClassifier,
+            new ExpiringDedupeCache(NOTIFICATION_COOLDOWN, MAX_TRACKED_NOTIFICATIONS),
+            alertManager.getPipeline());
         createNotificationChannel();
 
         // Register broadcast receiver for test alerts
@@ -50,7 +58,8 @@ public class NotificationListener extends NotificationListenerService {
             public void onReceive(Context context, Intent intent) {
                 if (TEST_ALERT_ACTION.equals(intent.getAction())) {
                     Log.i(TAG, "Test Alert Received!");
-                    alertManager.triggerAlert("Test Alert", "This is a test notification");
+                    alertManager.getPipeline().submit(AlertPipeline.Source.TEST,
+                        "Test Alert", "This is a test notification");
                 }
             }
         };
@@ -65,6 +74,7 @@ public class NotificationListener extends NotificationListenerService {
 
     @Override
     public void onNotificationPosted(StatusBarNotification sbn) {
+        long postTime = sbn.getPostTime();
         String packageName = sbn.getPackageName();
         Notification notification = sbn.getNotification();
         Bundle extras = notification.extras;
@@ -80,40 +90,17 @@ public class NotificationListener extends NotificationListenerService {
         showDebugToast("通知: " + packageName + "\n标题: " + title);
 
         // Filter for TradingView app or email apps with "TradingView" in content
-        if (isTradingViewAlert(packageName, title, text)) {
-            // 创建唯一标识符（使用通知key或组合title+text）
-            final String notificationKey;
-            if (sbn.getKey() != null) {
-                notificationKey = sbn.getKey();
-            } else {
-                notificationKey = packageName + ":" + title + ":" + text;
-            }
-
-            // 检查是否已处理过这个通知
-            if (processedNotifications.contains(notificationKey)) {
-                Log.d(TAG, "Notification already processed, skipping: " + notificationKey);
-                return;
-            }
-
-            // 标记为已处理
-            processedNotifications.add(notificationKey);
-
-            Log.i(TAG, "TradingView Alert Detected!");
-            alertManager.triggerAlert(title, text);
-
-            // 1分钟后清除这个通知的记录，允许相同警报再次触发
-            new Thread(() -> {
-                try {
-                    Thread.sleep(NOTIFICATION_COOLDOWN);
-                    processedNotifications.remove(notificationKey);
-                    Log.d(TAG, "Notification cooldown expired: " + notificationKey);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
-        } else {
-            // Log why it wasn't detected
-            Log.d(TAG, "Not a TradingView alert - Package: " + packageName);
+        switch (ingest.onNotification(packageName, sbn.getKey(), title, text, postTime)) {
+            case SUBMITTED:
+                Log.i(TAG, "TradingView Alert Detected!");
+                break;
+            case DUPLICATE:
+                Log.d(TAG, "Notification already processed, skipping: " + sbn.getKey());
+                break;
+            default:
+                // Log why it wasn't detected
+                Log.d(TAG, "Not a TradingView alert - Package: " + packageName);
+                break;
         }
     }
 
@@ -126,44 +113,6 @@ public class NotificationListener extends NotificationListenerService {
         });
     }
 
-    private boolean isTradingViewAlert(String packageName, String title, String text) {
-        // TradingView app package names
-        if (packageName.contains("tradingview") ||
-            packageName.contains("com.tradingview")) {
-            return true;
-        }
-
-        // Email apps with TradingView in content
-        String[] emailApps = {
-            "com.google.android.gm",           // Gmail
-            "com.microsoft.office.outlook",    // Outlook
-            "com.yahoo.mobile.client",         // Yahoo Mail
-            "com.samsung.android.email",       // Samsung Email
-            "com.tencent.androidqqmail",       // QQ邮箱
-            "com.tencent.qqlite",              // QQ轻聊版
-            "com.tencent.mobileqq"             // QQ (可能也用于邮件通知)
-        };
-
-        for (String emailApp : emailApps) {
-            if (packageName.equals(emailApp)) {
-                String content = (title + " " + text).toLowerCase();
-                // 检测TradingView相关关键词
-                if (content.contains("tradingview") ||
-                    content.contains("alert") ||
-                    content.contains("警报") ||
-                    content.contains("提醒") ||
-                    content.contains("btc") ||
-                    content.contains("eth") ||
-                    content.contains("usdt")) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             CharSequence name = "TradingView Alerts";
@@ -195,11 +144,13 @@ public class NotificationListener extends NotificationListenerService {
     public void onDestroy() {
         super.onDestroy();
         if (alertManager != null) {
-            alertManager.cleanup();
+            AlertManager.release();
+            alertManager = null;
         }
         if (testAlertReceiver != null) {
             unregisterReceiver(testAlertReceiver);
         }
+        Log.d(TAG, "Ingest stats: " + ingest);
         Log.d(TAG, "NotificationListener Service Destroyed");
     }
 }